@@ -0,0 +1,25 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar: JMH command line, with results written as JSON to jmh-result.json unless the
+ * result format or file is given explicitly, so that runs can be compared by tools.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> argv = new ArrayList<>(Arrays.asList(args));
+        if (!argv.contains("-rf")) {
+            argv.add("-rf");
+            argv.add("json");
+        }
+        if (!argv.contains("-rff")) {
+            argv.add("-rff");
+            argv.add("jmh-result.json");
+        }
+        org.openjdk.jmh.Main.main(argv.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,104 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.abagiev.examples.spring.intercept.model.Binding;
+import ru.abagiev.examples.spring.intercept.repo.ConcurrentLongSet;
+
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binding store lookups: ConcurrentHashMap key set of Binding objects against packed keys in ConcurrentLongSet.
+ * Run with -prof gc to see the allocation per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BindingSetBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private Set<Binding> objectSet;
+    private ConcurrentLongSet packedSet;
+    private long[] students;
+    private long[] books;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        objectSet = ConcurrentHashMap.newKeySet();
+        packedSet = new ConcurrentLongSet();
+        students = new long[size];
+        books = new long[size];
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < size; i++) {
+            students[i] = 1 + random.nextInt(Math.max(1, size / 10));
+            books[i] = 1 + random.nextInt(size);
+            objectSet.add(binding(students[i], books[i]));
+            packedSet.add(pack(students[i], books[i]));
+        }
+    }
+
+    @Benchmark
+    public boolean objectContains() {
+        int i = next();
+        return objectSet.contains(binding(students[i], books[i]));
+    }
+
+    @Benchmark
+    public boolean packedContains() {
+        int i = next();
+        return packedSet.contains(pack(students[i], books[i]));
+    }
+
+    @Benchmark
+    public boolean objectMiss() {
+        int i = next();
+        return objectSet.contains(binding(students[i], books[i] + size));
+    }
+
+    @Benchmark
+    public boolean packedMiss() {
+        int i = next();
+        return packedSet.contains(pack(students[i], books[i] + size));
+    }
+
+    @Benchmark
+    public boolean objectRemoveAdd() {
+        int i = next();
+        Binding b = binding(students[i], books[i]);
+        return objectSet.remove(b) & objectSet.add(b);
+    }
+
+    @Benchmark
+    public boolean packedRemoveAdd() {
+        int i = next();
+        long key = pack(students[i], books[i]);
+        return packedSet.remove(key) & packedSet.add(key);
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = i + 1 == size ? 0 : i + 1;
+        return i;
+    }
+
+    static Binding binding(long studentId, long bookId) {
+        Binding binding = new Binding();
+        binding.setStudentId(studentId);
+        binding.setBookId(bookId);
+        return binding;
+    }
+
+    /* Same packing as LibraryRepository.bindingKey() */
+    static long pack(long studentId, long bookId) {
+        return studentId << 32 | bookId;
+    }
+}
@@ -0,0 +1,36 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import org.openjdk.jol.info.GraphLayout;
+import ru.abagiev.examples.spring.intercept.model.Binding;
+import ru.abagiev.examples.spring.intercept.repo.ConcurrentLongSet;
+
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Retained heap per binding of both binding stores.
+ * Run: java -cp target/benchmarks.jar ru.abagiev.examples.spring.intercept.bench.BindingSetFootprint
+ */
+public class BindingSetFootprint {
+
+    public static void main(String[] args) {
+        for (int size : new int[]{1_000, 100_000, 1_000_000}) {
+            Set<Binding> objectSet = ConcurrentHashMap.newKeySet();
+            ConcurrentLongSet packedSet = new ConcurrentLongSet();
+
+            SplittableRandom random = new SplittableRandom(42);
+            while (objectSet.size() < size) {
+                long studentId = 1 + random.nextInt(Math.max(1, size / 10));
+                long bookId = 1 + random.nextInt(size);
+                objectSet.add(BindingSetBenchmark.binding(studentId, bookId));
+                packedSet.add(BindingSetBenchmark.pack(studentId, bookId));
+            }
+
+            long objectBytes = GraphLayout.parseInstance(objectSet).totalSize();
+            long packedBytes = GraphLayout.parseInstance(packedSet).totalSize();
+            System.out.printf("bindings=%d object=%.1f B/binding packed=%.1f B/binding%n",
+                    size, (double) objectBytes / size, (double) packedBytes / size);
+        }
+    }
+}
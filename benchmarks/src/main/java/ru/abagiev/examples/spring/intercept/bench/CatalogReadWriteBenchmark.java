@@ -0,0 +1,57 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.abagiev.examples.spring.intercept.model.Book;
+import ru.abagiev.examples.spring.intercept.repo.LibraryRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getAllBooks() readers next to a writer adding and removing books. Every write makes the next read copy the
+ * catalog into a new snapshot, so the read cost depends on both catalog size and write rate.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogReadWriteBenchmark {
+
+    @Param({"1000", "100000"})
+    private int books;
+
+    private LibraryRepository repo;
+
+    @Setup
+    public void setup() {
+        repo = new LibraryRepository();
+        for (int i = 0; i < books; i++) {
+            repo.addBook("Title of the book number " + i, "Author " + (i % 1000));
+        }
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(4)
+    public List<Book> readNoWriter() {
+        return repo.getAllBooks();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public List<Book> read() {
+        return repo.getAllBooks();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public Book write() {
+        Book book = repo.addBook("Title", "Author");
+        repo.removeBook(book.getId());
+        return book;
+    }
+}
@@ -0,0 +1,287 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.SpringInterceptExampleApp;
+import ru.abagiev.examples.spring.intercept.metrics.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop end-to-end load test: boots the application on a random local port, seeds the catalog and sends a
+ * weighted mix of requests through WebClient at a fixed arrival rate.
+ * <p>
+ * Requests are issued at their scheduled times whether or not earlier ones have completed, and latency is
+ * measured from the scheduled time, so a stalled server is charged for the requests it delayed (no coordinated
+ * omission). Arguments starting with --load. configure the test, the rest are passed to the application:
+ * <pre>
+ * java -cp target/benchmarks.jar ru.abagiev.examples.spring.intercept.bench.LoadTest \
+ *     --load.rate=5000 --load.duration=30s --intercept.log.mode=async
+ * </pre>
+ * Options: rate (requests per second), warmup, duration, books, students, bindings, mix as name:weight pairs
+ * of getBook, getStudent, bind, isBound, boundBooks, addBook, and maxInFlight. Requests scheduled while
+ * maxInFlight are outstanding are not sent and reported as dropped, this keeps an overloaded run from
+ * exhausting sockets.
+ */
+public class LoadTest {
+
+    private static final int SEED_CHUNK = 1000;
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final List<String> appArgs = new ArrayList<>();
+    private final Map<String, Op> ops = new LinkedHashMap<>();
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private WebClient client;
+    private int books;
+    private int students;
+
+    public static void main(String[] args) throws InterruptedException {
+        new LoadTest(args).run();
+    }
+
+    private LoadTest(String[] args) {
+        options.put("rate", "2000");
+        options.put("warmup", "10s");
+        options.put("duration", "30s");
+        options.put("books", "10000");
+        options.put("students", "1000");
+        options.put("bindings", "10000");
+        options.put("mix", "getBook:40,getStudent:20,bind:5,isBound:20,boundBooks:10,addBook:5");
+        options.put("maxInFlight", "1000");
+        for (String arg : args) {
+            if (arg.startsWith("--load.") && arg.indexOf('=') > 0) {
+                options.put(arg.substring("--load.".length(), arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                appArgs.add(arg);
+            }
+        }
+        appArgs.add("--server.port=0");
+    }
+
+    private void run() throws InterruptedException {
+        ConfigurableApplicationContext ctx = SpringApplication.run(SpringInterceptExampleApp.class, appArgs.toArray(new String[0]));
+        try {
+            int port = ((ReactiveWebServerApplicationContext) ctx).getWebServer().getPort();
+            client = WebClient.create("http://localhost:" + port);
+            books = Integer.parseInt(options.get("books"));
+            students = Integer.parseInt(options.get("students"));
+            defineOps();
+            seed(Integer.parseInt(options.get("bindings")));
+
+            int rate = Integer.parseInt(options.get("rate"));
+            long warmupNanos = parseDuration(options.get("warmup")).toNanos();
+            long durationNanos = parseDuration(options.get("duration")).toNanos();
+            System.out.println("Load test: " + options + ", app args " + appArgs);
+
+            long measured = drive(rate, warmupNanos, durationNanos);
+            report(measured, durationNanos);
+        } finally {
+            ctx.close();
+        }
+    }
+
+    private void defineOps() {
+        ops.put("getBook", new Op(r -> client.get().uri("/book/{id}", 1 + r.nextInt(books))));
+        ops.put("getStudent", new Op(r -> client.get().uri("/student/{id}", 1 + r.nextInt(students))));
+        ops.put("bind", new Op(r -> client.post().uri("/library/bind")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(key(1 + r.nextInt(students), 1 + r.nextInt(books)))));
+        ops.put("isBound", new Op(r -> client.get().uri("/library/student/{s}/bound/{b}", 1 + r.nextInt(students), 1 + r.nextInt(books))));
+        ops.put("boundBooks", new Op(r -> client.get().uri("/library/student/{s}/all", 1 + r.nextInt(students))));
+        ops.put("addBook", new Op(r -> client.post().uri("/book/add")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(book(r.nextInt()))));
+    }
+
+    /* Catalog and bindings through the batch endpoints, so seeding costs seconds even for large catalogs */
+    private void seed(int bindings) {
+        long start = System.nanoTime();
+        Flux.range(0, books).buffer(SEED_CHUNK)
+                .concatMap(chunk -> post("/book/add/batch", map(chunk, LoadTest::book)))
+                .blockLast();
+        Flux.range(0, students).buffer(SEED_CHUNK)
+                .concatMap(chunk -> post("/student/add/batch", map(chunk, i -> student(i))))
+                .blockLast();
+        SplittableRandom random = new SplittableRandom(42);
+        Flux.range(0, bindings).buffer(SEED_CHUNK)
+                .concatMap(chunk -> post("/library/bind/batch", map(chunk, i -> key(1 + random.nextInt(students), 1 + random.nextInt(books)))))
+                .blockLast();
+        System.out.println("Seeded " + books + " books, " + students + " students, " + bindings + " bindings in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /* Returns the number of requests scheduled in the measured part of the run */
+    private long drive(int rate, long warmupNanos, long durationNanos) throws InterruptedException {
+        List<Op> weighted = weightedOps();
+        int maxInFlight = Integer.parseInt(options.get("maxInFlight"));
+        SplittableRandom random = new SplittableRandom(7);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+        long measured = 0;
+
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * interval;
+            if (scheduled >= end) {
+                break;
+            }
+            long delay = scheduled - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+
+            boolean record = scheduled >= measureStart;
+            if (record) {
+                measured++;
+            }
+            Op op = weighted.get(random.nextInt(weighted.size()));
+            if (inFlight.get() >= maxInFlight) {
+                if (record) {
+                    op.dropped.increment();
+                }
+            } else {
+                op.send(random, scheduled, record);
+            }
+        }
+
+        /* Let the last requests finish, their latency still counts from the scheduled time */
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return measured;
+    }
+
+    private List<Op> weightedOps() {
+        List<Op> weighted = new ArrayList<>();
+        for (String pair : options.get("mix").split(",")) {
+            String[] nameWeight = pair.trim().split(":");
+            Op op = ops.get(nameWeight[0]);
+            if (op == null) {
+                throw new IllegalArgumentException("Unknown operation " + nameWeight[0] + ", known are " + ops.keySet());
+            }
+            weighted.addAll(Collections.nCopies(Integer.parseInt(nameWeight[1]), op));
+        }
+        return weighted;
+    }
+
+    private void report(long scheduled, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        System.out.println();
+        System.out.println(String.format("%-12s %10s %8s %8s %10s %10s %10s %10s %10s",
+                "op", "count", "errors", "dropped", "rps", "p50 us", "p99 us", "p999 us", "max us"));
+        long total = 0;
+        for (Map.Entry<String, Op> e : ops.entrySet()) {
+            LatencyHistogram.Snapshot s = e.getValue().latency.snapshot();
+            long dropped = e.getValue().dropped.sum();
+            if (s.getCount() == 0 && dropped == 0) {
+                continue;
+            }
+            total += s.getCount();
+            System.out.println(String.format("%-12s %10d %8d %8d %10.0f %10d %10d %10d %10d",
+                    e.getKey(), s.getCount(), e.getValue().errors.sum(), dropped, s.getCount() / seconds,
+                    micros(s.getPercentile(50)), micros(s.getPercentile(99)), micros(s.getPercentile(99.9)), micros(s.getMax())));
+        }
+        System.out.println(String.format("%-12s %10d %8s %8s %10.0f   scheduled %d", "total", total, "", "", total / seconds, scheduled));
+    }
+
+    private Mono<Void> post(String uri, Object body) {
+        return client.post().uri(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(body)
+                .retrieve()
+                .bodyToMono(String.class)
+                .then();
+    }
+
+    private static <T> List<T> map(List<Integer> chunk, java.util.function.IntFunction<T> mapper) {
+        List<T> list = new ArrayList<>(chunk.size());
+        for (int i : chunk) {
+            list.add(mapper.apply(i));
+        }
+        return list;
+    }
+
+    private static Map<String, Object> book(int i) {
+        Map<String, Object> book = new LinkedHashMap<>();
+        book.put("title", "Title of the book number " + i);
+        book.put("author", "Author " + (i & 1023));
+        return book;
+    }
+
+    private static Map<String, Object> student(int i) {
+        Map<String, Object> student = new LinkedHashMap<>();
+        student.put("firstName", "First" + i);
+        student.put("lastName", "Last" + i);
+        return student;
+    }
+
+    private static Map<String, Object> key(long studentId, long bookId) {
+        Map<String, Object> key = new LinkedHashMap<>();
+        key.put("studentId", studentId);
+        key.put("bookId", bookId);
+        return key;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static Duration parseDuration(String value) {
+        return Duration.parse("PT" + value.toUpperCase());
+    }
+
+    private interface RequestFactory {
+        WebClient.RequestHeadersSpec<?> create(SplittableRandom random);
+    }
+
+    private class Op {
+        private final RequestFactory factory;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+
+        Op(RequestFactory factory) {
+            this.factory = factory;
+        }
+
+        /* Not found answers count as errors too, the seeded IDs are all valid */
+        void send(SplittableRandom random, long scheduled, boolean record) {
+            inFlight.incrementAndGet();
+            factory.create(random).exchange()
+                    .flatMap(rsp -> rsp.bodyToMono(byte[].class)
+                            .then(Mono.just(rsp.statusCode().isError())))
+                    .subscribe(error -> {
+                        if (record) {
+                            latency.record(System.nanoTime() - scheduled);
+                            if (error) {
+                                errors.increment();
+                            }
+                        }
+                    }, e -> {
+                        if (record) {
+                            latency.record(System.nanoTime() - scheduled);
+                            errors.increment();
+                        }
+                        inFlight.decrementAndGet();
+                    }, inFlight::decrementAndGet);
+        }
+    }
+}
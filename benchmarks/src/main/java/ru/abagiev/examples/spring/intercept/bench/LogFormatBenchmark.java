@@ -0,0 +1,94 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.web.bind.annotation.RequestMethod;
+import ru.abagiev.examples.spring.intercept.config.MappingDef;
+import ru.abagiev.examples.spring.intercept.config.PathTemplate;
+import ru.abagiev.examples.spring.intercept.log.RequestLogEvent;
+import ru.abagiev.examples.spring.intercept.model.Book;
+import ru.abagiev.examples.spring.intercept.rest.BookController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per call formatting done by the proxy: path rendering from handler arguments and a log line with request
+ * and response payloads, the latter with a small and a list response cut by the render limit. Payloads are
+ * rendered when the event is created, so each call captures a new event before formatting it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogFormatBenchmark {
+
+    private PathTemplate template;
+    private Object[] args;
+    private Logger logger;
+    private MappingDef add;
+    private MappingDef all;
+    private BookController.AddDto req;
+    private Book book;
+    private BookController.BookListDto books;
+    private final StringBuilder sb = new StringBuilder(2048);
+
+    @Setup
+    public void setup() {
+        Map<String, Integer> vars = new HashMap<>();
+        vars.put("studentId", 0);
+        vars.put("bookId", 1);
+        template = PathTemplate.compile("/library/student/{studentId}/bound/{bookId}", vars);
+        args = new Object[]{12345L, 67890L};
+
+        req = new BookController.AddDto();
+        req.setTitle("Title of the book");
+        req.setAuthor("Author of the book");
+        book = book(1);
+        List<Book> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(book(i));
+        }
+        books = new BookController.BookListDto(list);
+
+        logger = LoggerFactory.getLogger(BookController.class);
+        add = MappingDef.of(RequestMethod.POST, "/book/add");
+        all = MappingDef.of(RequestMethod.GET, "/book/all");
+    }
+
+    @Benchmark
+    public String renderPath() {
+        return template.render(args);
+    }
+
+    @Benchmark
+    public int formatSmall() {
+        RequestLogEvent event = new RequestLogEvent(logger, add, "/book/add", req, "", book,
+                null, 1, 1024, 1024, -1, -1, false, Level.INFO, null);
+        sb.setLength(0);
+        return event.format(sb).length();
+    }
+
+    @Benchmark
+    public int formatList() {
+        RequestLogEvent event = new RequestLogEvent(logger, all, "/book/all", null, "",
+                books, null, 1, 1024, 256, -1, -1, false, Level.INFO, null);
+        sb.setLength(0);
+        return event.format(sb).length();
+    }
+
+    private static Book book(long id) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle("Title of the book number " + id);
+        book.setAuthor("Author " + id);
+        return book;
+    }
+}
@@ -0,0 +1,82 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cglib.proxy.Enhancer;
+import ru.abagiev.examples.spring.intercept.cache.ResponseCache;
+import ru.abagiev.examples.spring.intercept.config.InterceptControl;
+import ru.abagiev.examples.spring.intercept.config.InterceptProperties;
+import ru.abagiev.examples.spring.intercept.config.LibraryProperties;
+import ru.abagiev.examples.spring.intercept.config.RestControllerProxy;
+import ru.abagiev.examples.spring.intercept.exec.OperationExecutor;
+import ru.abagiev.examples.spring.intercept.log.RequestLogger;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetricsRegistry;
+import ru.abagiev.examples.spring.intercept.repo.DirectMutationLog;
+import ru.abagiev.examples.spring.intercept.repo.LibraryRepository;
+import ru.abagiev.examples.spring.intercept.rest.LibraryController;
+import ru.abagiev.examples.spring.intercept.service.LibraryService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of RestControllerProxy over a plain controller call on GET /library/student/{studentId}/bound/{bookId}:
+ * plain, proxied with logging filtered out (metrics only), proxied with every call formatted into a log line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyInvocationBenchmark {
+
+    private LibraryController plain;
+    private LibraryController quiet;
+    private LibraryController logged;
+    private final StringBuilder line = new StringBuilder(256);
+
+    @Setup
+    public void setup() {
+        LibraryRepository repo = new LibraryRepository();
+        repo.addStudent("First", "Last");
+        repo.addBook("Title", "Author");
+        repo.bind(1, 1);
+        LibraryService service = new LibraryService(repo, new DirectMutationLog(), new OperationExecutor(new LibraryProperties(), new InterceptProperties()));
+        ResponseCache cache = new ResponseCache(repo, new ObjectMapper(), new LibraryProperties());
+        plain = new LibraryController(service, cache);
+
+        InterceptProperties errorsOnly = new InterceptProperties();
+        errorsOnly.getLog().setErrorsOnly(true);
+        quiet = proxy(plain, errorsOnly, event -> {
+        });
+        logged = proxy(plain, new InterceptProperties(), event -> {
+            line.setLength(0);
+            event.format(line);
+        });
+    }
+
+    @Benchmark
+    public Object plain() {
+        return plain.bound(1L, 1L).block();
+    }
+
+    @Benchmark
+    public Object proxiedNotLogged() {
+        return quiet.bound(1L, 1L).block();
+    }
+
+    @Benchmark
+    public Object proxiedLogged() {
+        return logged.bound(1L, 1L).block();
+    }
+
+    /* Same way as BeanProcessor does */
+    private static LibraryController proxy(LibraryController bean, InterceptProperties properties, RequestLogger logger) {
+        Enhancer en = new Enhancer();
+        en.setSuperclass(LibraryController.class);
+        en.setCallback(new RestControllerProxy(bean, LibraryController.class, logger, properties,
+                new EndpointMetricsRegistry(), new InterceptControl(properties)));
+        Class<?>[] paramTypes = LibraryController.class.getConstructors()[0].getParameterTypes();
+        return (LibraryController) en.create(paramTypes, new Object[paramTypes.length]);
+    }
+}
@@ -0,0 +1,76 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.abagiev.examples.spring.intercept.model.Book;
+import ru.abagiev.examples.spring.intercept.repo.LibraryRepository;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LibraryRepository binding operations as the number of bindings grows, with ten bindings per student and per
+ * book on average. The largest size needs a few gigabytes of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class RepositoryScaleBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int bindings;
+
+    private LibraryRepository repo;
+    private long[] students;
+    private long[] books;
+    private int entities;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        repo = new LibraryRepository();
+        entities = Math.max(1, bindings / 10);
+        for (int i = 0; i < entities; i++) {
+            repo.addBook("Title " + i, "Author " + i);
+            repo.addStudent("First" + i, "Last" + i);
+        }
+
+        students = new long[bindings];
+        books = new long[bindings];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < bindings; i++) {
+            students[i] = 1 + random.nextInt(entities);
+            books[i] = 1 + random.nextInt(entities);
+            repo.bind(students[i], books[i]);
+        }
+    }
+
+    /* Size stays the same: an existing binding is removed and added back */
+    @Benchmark
+    public boolean unbindBind() {
+        int i = next();
+        repo.unbind(students[i], books[i]);
+        repo.bind(students[i], books[i]);
+        return repo.isBound(students[i], books[i]);
+    }
+
+    @Benchmark
+    public boolean isBound() {
+        int i = next();
+        return repo.isBound(students[i], books[i]);
+    }
+
+    @Benchmark
+    public List<Book> getBoundBooks() {
+        return repo.getBoundBooks(students[next()]);
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = i + 1 == bindings ? 0 : i + 1;
+        return i;
+    }
+}
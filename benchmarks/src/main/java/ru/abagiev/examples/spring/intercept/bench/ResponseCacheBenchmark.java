@@ -0,0 +1,62 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.cache.Encoded;
+import ru.abagiev.examples.spring.intercept.cache.ResponseCache;
+import ru.abagiev.examples.spring.intercept.config.LibraryProperties;
+import ru.abagiev.examples.spring.intercept.repo.LibraryRepository;
+import ru.abagiev.examples.spring.intercept.rest.LibraryController;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost saved by the response cache on GET /library/student/{id}/all: lookup and JSON encoding of the
+ * bound books list on every call versus a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseCacheBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int boundBooks;
+
+    private LibraryRepository repo;
+    private ResponseCache cached;
+    private ResponseCache uncached;
+
+    @Setup
+    public void setup() {
+        repo = new LibraryRepository();
+        repo.addStudent("First", "Last");
+        for (int i = 0; i < boundBooks; i++) {
+            repo.addBook("Title of the book number " + i, "Author " + i);
+            repo.bind(1, i + 1);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        LibraryProperties disabled = new LibraryProperties();
+        disabled.getCache().setMaxBytes(0);
+        cached = new ResponseCache(repo, mapper, new LibraryProperties());
+        uncached = new ResponseCache(repo, mapper, disabled);
+    }
+
+    @Benchmark
+    public Encoded<LibraryController.BookListDto> encodeEveryCall() {
+        return uncached.get(ResponseCache.Kind.BOUND_BOOKS, 1, this::load).block();
+    }
+
+    @Benchmark
+    public Encoded<LibraryController.BookListDto> cacheHit() {
+        return cached.get(ResponseCache.Kind.BOUND_BOOKS, 1, this::load).block();
+    }
+
+    private Mono<LibraryController.BookListDto> load() {
+        return Mono.fromCallable(() -> new LibraryController.BookListDto(repo.getBoundBooks(1)));
+    }
+}
@@ -0,0 +1,68 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.abagiev.examples.spring.intercept.repo.LibraryRepository;
+import ru.abagiev.examples.spring.intercept.repo.SnapshotFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot save and restart cost of LibraryRepository as the catalog grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int books;
+
+    private LibraryRepository repo;
+    private Path dir;
+    private Path snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        repo = new LibraryRepository();
+        int students = Math.max(1, books / 10);
+        for (int i = 0; i < books; i++) {
+            repo.addBook("Title of the book number " + i, "Author " + (i % 1000));
+        }
+        for (int i = 0; i < students; i++) {
+            repo.addStudent("First" + i, "Last" + i);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < books; i++) {
+            repo.bind(1 + random.nextInt(students), 1 + random.nextInt(books));
+        }
+
+        dir = Files.createTempDirectory("library-bench");
+        snapshot = dir.resolve("library.snapshot");
+        SnapshotFile.write(repo, snapshot);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public SnapshotFile.Stats save() throws IOException {
+        return SnapshotFile.write(repo, snapshot);
+    }
+
+    @Benchmark
+    public LibraryRepository restart() throws IOException {
+        LibraryRepository restored = new LibraryRepository();
+        SnapshotFile.read(snapshot, restored);
+        return restored;
+    }
+}
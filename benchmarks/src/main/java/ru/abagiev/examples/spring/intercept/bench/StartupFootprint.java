@@ -0,0 +1,104 @@
+package ru.abagiev.examples.spring.intercept.bench;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.abagiev.examples.spring.intercept.SpringInterceptExampleApp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Startup time, loaded classes and metaspace of the application in both interception modes. Every run boots
+ * the application in a fresh JVM, modes are alternated and the median of each is reported.
+ * Run: java -cp target/benchmarks.jar ru.abagiev.examples.spring.intercept.bench.StartupFootprint [runs]
+ */
+public class StartupFootprint {
+
+    private static final String CHILD = "--child";
+    private static final String[] MODES = {"cglib", "handler"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && CHILD.equals(args[0])) {
+            child(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<List<long[]>> results = new ArrayList<>();
+        for (String ignored : MODES) {
+            results.add(new ArrayList<>());
+        }
+        for (int run = 0; run < runs; run++) {
+            for (int i = 0; i < MODES.length; i++) {
+                results.get(i).add(fork(MODES[i]));
+            }
+        }
+
+        System.out.printf("%-8s %10s %10s %14s%n", "mode", "startupMs", "classes", "metaspaceKb");
+        for (int i = 0; i < MODES.length; i++) {
+            System.out.printf("%-8s %10d %10d %14d%n", MODES[i],
+                    median(results.get(i), 0), median(results.get(i), 1), median(results.get(i), 2));
+        }
+    }
+
+    private static long[] fork(String mode) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                StartupFootprint.class.getName(), CHILD, "--intercept.mode=" + mode)
+                .redirectErrorStream(true)
+                .start();
+
+        /* Application log goes to the same stream, the measurement is the last line */
+        String last = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                last = line;
+            }
+        }
+        if (process.waitFor() != 0 || last == null) {
+            throw new IllegalStateException("Run in " + mode + " mode failed: " + last);
+        }
+
+        String[] values = last.split(" ");
+        return new long[]{Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2])};
+    }
+
+    private static void child(String[] appArgs) {
+        List<String> args = new ArrayList<>(Arrays.asList(appArgs));
+        args.add("--server.port=0");
+        args.add("--logging.level.root=WARN");
+
+        long start = System.nanoTime();
+        ConfigurableApplicationContext ctx = SpringApplication.run(SpringInterceptExampleApp.class, args.toArray(new String[0]));
+        long startupMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.gc();
+        long metaspace = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                metaspace = pool.getUsage().getUsed();
+            }
+        }
+        long classes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        ctx.close();
+
+        System.out.println(startupMs + " " + classes + " " + metaspace / 1024);
+    }
+
+    private static long median(List<long[]> runs, int column) {
+        List<Long> values = new ArrayList<>();
+        for (long[] run : runs) {
+            values.add(run[column]);
+        }
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+}
@@ -0,0 +1,22 @@
+package ru.abagiev.examples.spring.intercept.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.beans.ConstructorProperties;
+
+@Getter
+@ToString
+@AllArgsConstructor(onConstructor_ = @ConstructorProperties({"entries", "bytes", "hits", "misses",
+        "evictions", "invalidations", "stalePuts"}))
+public class CacheSnapshot {
+    private final long entries;
+    private final long bytes;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    /* Loaded values not stored because the entry was invalidated while loading */
+    private final long stalePuts;
+}
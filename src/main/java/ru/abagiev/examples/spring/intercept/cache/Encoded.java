@@ -0,0 +1,12 @@
+package ru.abagiev.examples.spring.intercept.cache;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/* Response value with its JSON encoding: the bytes are written as is, the value is what the request log renders */
+@Getter
+@RequiredArgsConstructor(staticName = "of")
+public class Encoded<T> {
+    private final T value;
+    private final byte[] bytes;
+}
@@ -0,0 +1,32 @@
+package ru.abagiev.examples.spring.intercept.cache;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+
+/* Writes the cached encoding of an Encoded value, registered ahead of the Jackson encoder */
+public class EncodedEncoder extends AbstractEncoder<Encoded<?>> {
+
+    public EncodedEncoder() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        Class<?> clazz = elementType.resolve();
+        return clazz != null && Encoded.class.isAssignableFrom(clazz) && super.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<? extends Encoded<?>> input, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        return Flux.from(input).map(encoded -> bufferFactory.wrap(encoded.getBytes()));
+    }
+}
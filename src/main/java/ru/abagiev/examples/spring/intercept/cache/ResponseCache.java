@@ -0,0 +1,220 @@
+package ru.abagiev.examples.spring.intercept.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.config.LibraryProperties;
+import ru.abagiev.examples.spring.intercept.repo.LibraryRepository;
+import ru.abagiev.examples.spring.intercept.repo.RepositoryListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of JSON encoded responses, so that a hit costs neither the lookup nor serialization. The value
+ * is kept along with its encoding for the request log, it is shared with the repository except for list wrappers.
+ * <p>
+ * Size bounded by encoded bytes, split into LRU stripes with their own locks. Entries are invalidated by
+ * repository change events: a book by its ID, a student and its bound books list by student ID, the bound books
+ * list by any binding change of the student. Every invalidation bumps the stripe generation and a value loaded
+ * under an older generation is not stored, so a load racing with a change can't bring a stale entry back.
+ */
+@Component
+@Slf4j
+public class ResponseCache implements RepositoryListener {
+
+    private static final String OBJECT_NAME = "ru.abagiev.examples.spring.intercept:type=ResponseCache";
+    private static final int STRIPES = 16;
+    /* Rough cost of a map entry with its key, counted on top of the value bytes */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    public enum Kind {
+        BOOK,
+        STUDENT,
+        BOUND_BOOKS
+    }
+
+    private final ObjectMapper mapper;
+    private final boolean enabled;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder stalePuts = new LongAdder();
+
+    public ResponseCache(LibraryRepository repo, ObjectMapper mapper, LibraryProperties properties) {
+        long maxBytes = properties.getCache().getMaxBytes();
+        this.mapper = mapper;
+        this.enabled = maxBytes > 0;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxBytes / STRIPES);
+        }
+        repo.addListener(this);
+    }
+
+    /* Cached encoded value, on a miss loads and encodes it. Failed loads are not cached */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<Encoded<T>> get(Kind kind, long id, Supplier<Mono<T>> loader) {
+        if (!enabled) {
+            return Mono.defer(loader).map(this::encode);
+        }
+
+        long key = key(kind, id);
+        Stripe stripe = stripe(key);
+        return Mono.defer(() -> {
+            /* Kind of the key determines the type of the value */
+            Encoded<T> cached = (Encoded<T>) stripe.get(key);
+            if (cached != null) {
+                hits.increment();
+                return Mono.just(cached);
+            }
+
+            misses.increment();
+            long generation = stripe.generation();
+            return loader.get().map(value -> {
+                Encoded<T> encoded = encode(value);
+                if (!stripe.put(key, encoded, generation)) {
+                    stalePuts.increment();
+                }
+                return encoded;
+            });
+        });
+    }
+
+    public void invalidate(Kind kind, long id) {
+        long key = key(kind, id);
+        stripe(key).invalidate(key);
+        invalidations.increment();
+    }
+
+    public CacheSnapshot snapshot() {
+        long entries = 0;
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                entries += stripe.map.size();
+                bytes += stripe.bytes;
+            }
+        }
+        return new CacheSnapshot(entries, bytes, hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), stalePuts.sum());
+    }
+
+    @Override
+    public void bookChanged(long bookId) {
+        invalidate(Kind.BOOK, bookId);
+    }
+
+    @Override
+    public void studentChanged(long studentId) {
+        invalidate(Kind.STUDENT, studentId);
+        invalidate(Kind.BOUND_BOOKS, studentId);
+    }
+
+    @Override
+    public void bindingChanged(long studentId, long bookId) {
+        invalidate(Kind.BOUND_BOOKS, studentId);
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean((ResponseCacheMXBean) this::snapshot, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            log.warn("Failed to register response cache MBean", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.warn("Failed to unregister response cache MBean", e);
+        }
+    }
+
+    private <T> Encoded<T> encode(T value) {
+        try {
+            return Encoded.of(value, mapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    /* Kind in the top byte, IDs are below 2^56 */
+    private static long key(Kind kind, long id) {
+        return (long) kind.ordinal() << 56 | id;
+    }
+
+    private Stripe stripe(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h >>> 60) & (STRIPES - 1)];
+    }
+
+    private class Stripe {
+        private final long maxBytes;
+        /* Access ordered, the eldest entry is the least recently used */
+        private final LinkedHashMap<Long, Encoded<?>> map = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes;
+        private long generation;
+
+        Stripe(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized Encoded<?> get(long key) {
+            return map.get(key);
+        }
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized boolean put(long key, Encoded<?> value, long loadedGeneration) {
+            if (loadedGeneration != generation) {
+                return false;
+            }
+            long size = value.getBytes().length + ENTRY_OVERHEAD;
+            if (size > maxBytes) {
+                return true;
+            }
+
+            Encoded<?> old = map.put(key, value);
+            bytes += old == null ? size : value.getBytes().length - old.getBytes().length;
+            Iterator<Map.Entry<Long, Encoded<?>>> it = map.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<Long, Encoded<?>> eldest = it.next();
+                it.remove();
+                bytes -= eldest.getValue().getBytes().length + ENTRY_OVERHEAD;
+                evictions.increment();
+            }
+            return true;
+        }
+
+        synchronized void invalidate(long key) {
+            generation++;
+            Encoded<?> old = map.remove(key);
+            if (old != null) {
+                bytes -= old.getBytes().length + ENTRY_OVERHEAD;
+            }
+        }
+    }
+}
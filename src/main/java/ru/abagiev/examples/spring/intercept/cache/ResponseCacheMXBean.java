@@ -0,0 +1,6 @@
+package ru.abagiev.examples.spring.intercept.cache;
+
+public interface ResponseCacheMXBean {
+
+    CacheSnapshot getCache();
+}
@@ -0,0 +1,15 @@
+package ru.abagiev.examples.spring.intercept.coalesce;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Concurrent calls of a GET handler with the same path and request parameters share a single call and its result.
+ * Only for handlers whose result depends on nothing else, nothing is shared once the call has completed.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Coalesce {
+}
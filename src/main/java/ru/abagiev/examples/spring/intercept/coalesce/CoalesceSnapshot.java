@@ -0,0 +1,18 @@
+package ru.abagiev.examples.spring.intercept.coalesce;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.beans.ConstructorProperties;
+
+@Getter
+@ToString
+@AllArgsConstructor(onConstructor_ = @ConstructorProperties({"name", "inFlight", "calls", "joined"}))
+public class CoalesceSnapshot {
+    private final String name;
+    private final int inFlight;
+    /* Calls actually run and calls that got the result of one already in flight */
+    private final long calls;
+    private final long joined;
+}
@@ -0,0 +1,84 @@
+package ru.abagiev.examples.spring.intercept.coalesce;
+
+import lombok.Getter;
+import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.trace.RequestTrace;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight of identical calls: the first subscriber of a key runs the call, subscribers arriving while it is in
+ * flight get the same result. The call leaves the map as soon as it terminates, so a result is never served later.
+ * <p>
+ * Subscribers are counted by a reference, one of them cancelling only detaches it, the call is cancelled once all of
+ * them have. The value is replayed to a subscriber joining after it is emitted but before the call leaves the map,
+ * otherwise it would only see the completion and answer empty. The call runs with the subscriber context of the first one, but with a trace of its own,
+ * whose stages every traced subscriber adds to its trace once the call completes. So a cancelled first request
+ * isn't written to after it is emitted, and joined requests show the stages too. With trace sampling, a traced
+ * request joining a call started by an untraced one gets no stages of the call.
+ */
+public class SingleFlight<K> {
+
+    @Getter
+    private final String name;
+    private final Map<K, Flight> flights = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> run(K key, Mono<T> mono) {
+        return Mono.subscriberContext().flatMap(context -> {
+            RequestTrace trace = RequestTrace.of(context);
+            Flight flight = join(key, mono, trace != null);
+            Mono<T> shared = (Mono<T>) flight.shared;
+            RequestTrace sharedTrace = flight.trace;
+            if (trace == null || sharedTrace == null) {
+                return shared;
+            }
+            return shared.doOnSuccessOrError((value, error) -> trace.recordAll(sharedTrace));
+        });
+    }
+
+    /* Flight in progress for the key, or a new one */
+    private Flight join(K key, Mono<?> mono, boolean traced) {
+        Flight flight = flights.get(key);
+        if (flight == null) {
+            Flight created = new Flight();
+            Mono<?> call = mono;
+            if (traced) {
+                RequestTrace sharedTrace = RequestTrace.shared();
+                created.trace = sharedTrace;
+                call = mono.subscriberContext(context -> context.put(RequestTrace.class, sharedTrace));
+            }
+            created.shared = call
+                    .doFinally(signal -> flights.remove(key, created))
+                    .flux()
+                    .replay(1)
+                    .refCount()
+                    .next();
+            flight = flights.putIfAbsent(key, created);
+            if (flight == null) {
+                calls.increment();
+                return created;
+            }
+        }
+        joined.increment();
+        return flight;
+    }
+
+    public CoalesceSnapshot snapshot() {
+        return new CoalesceSnapshot(name, flights.size(), calls.sum(), joined.sum());
+    }
+
+    private static class Flight {
+        private Mono<?> shared;
+        /* Null unless the call was started by a traced request */
+        private RequestTrace trace;
+    }
+}
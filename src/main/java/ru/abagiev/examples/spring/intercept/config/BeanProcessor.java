@@ -1,16 +1,27 @@
 package ru.abagiev.examples.spring.intercept.config;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cglib.proxy.Enhancer;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.RestController;
+import ru.abagiev.examples.spring.intercept.log.RequestLogger;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetricsRegistry;
 
 @Component
+@ConditionalOnProperty(prefix = "intercept", name = "mode", havingValue = "cglib", matchIfMissing = true)
 @Slf4j
+@RequiredArgsConstructor
 public class BeanProcessor implements BeanPostProcessor {
 
+    private final RequestLogger requestLogger;
+    private final InterceptProperties properties;
+    private final EndpointMetricsRegistry metricsRegistry;
+    private final InterceptControl control;
+
     @Override
     public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
         Class<?> clazz = bean.getClass();
@@ -19,7 +30,7 @@ public class BeanProcessor implements BeanPostProcessor {
 
             Enhancer en = new Enhancer();
             en.setSuperclass(clazz);
-            en.setCallback(new RestControllerProxy(bean, clazz));
+            en.setCallback(new RestControllerProxy(bean, clazz, requestLogger, properties, metricsRegistry, control));
             Class<?>[] paramTypes = clazz.getConstructors()[0].getParameterTypes();
             return en.create(paramTypes, new Object[paramTypes.length]);
         }
@@ -0,0 +1,209 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.coalesce.Coalesce;
+import ru.abagiev.examples.spring.intercept.coalesce.SingleFlight;
+import ru.abagiev.examples.spring.intercept.limit.ConcurrencyLimit;
+import ru.abagiev.examples.spring.intercept.limit.ConcurrencyLimiter;
+import ru.abagiev.examples.spring.intercept.log.LogPolicy;
+import ru.abagiev.examples.spring.intercept.log.LogSettings;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetrics;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetricsRegistry;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/* Intercepted handler method as seen by both interception modes, built once at startup */
+class HandlerDef {
+    Logger log;
+    MappingDef mapping;
+    PathTemplate path;
+    boolean streaming;
+    /* Current settings, replaced at runtime through InterceptControl */
+    InterceptControl.Endpoint settings;
+    EndpointMetrics metrics;
+    /* Null if the endpoint is not limited */
+    ConcurrencyLimiter limiter;
+    /* Calls in flight by path and request parameters, null if the endpoint is not coalesced */
+    SingleFlight<String> flights;
+    boolean hasBodyDto;
+    int bodyDtoIndex;
+    List<VarDef> reqParamList = new ArrayList<>();
+
+    /* Null if the method is not a request mapping returning Mono or Flux */
+    static HandlerDef scan(Class<?> clazz, Method m, InterceptProperties properties, EndpointMetricsRegistry metricsRegistry,
+                           InterceptControl control) {
+        /* Check that method is a request mapping method */
+        MappingDef mapping = getRequestMapping(clazz, m);
+        if (mapping == null) {
+            return null;
+        }
+
+        /* Check that return type is Mono or Flux */
+        Class<?> returnType = m.getReturnType();
+        boolean streaming = Flux.class.isAssignableFrom(returnType);
+        if (!streaming && !returnType.isAssignableFrom(Mono.class)) {
+            return null;
+        }
+
+        HandlerDef def = new HandlerDef();
+        def.log = LoggerFactory.getLogger(clazz);
+        def.mapping = mapping;
+        def.streaming = streaming;
+        def.settings = control.register(mapping, getLogSettings(m, properties));
+        def.metrics = metricsRegistry.register(mapping, streaming);
+        def.limiter = streaming ? null : getLimiter(clazz, m, mapping, control);
+
+        /* Scan for arguments */
+        Map<String, Integer> pathVars = new HashMap<>();
+        Parameter[] params = m.getParameters();
+        for (int i = 0; i < params.length; i++) {
+            Parameter p = params[i];
+            PathVariable pathVar = p.getAnnotation(PathVariable.class);
+            RequestParam reqParam = p.getAnnotation(RequestParam.class);
+            if (p.isAnnotationPresent(RequestBody.class) && !def.hasBodyDto) {
+                def.hasBodyDto = true;
+                def.bodyDtoIndex = i;
+            } else if (pathVar != null) {
+                pathVars.put(getParameterName(p, pathVar.value()), i);
+            } else if (reqParam != null) {
+                String defaultValue = ValueConstants.DEFAULT_NONE.equals(reqParam.defaultValue()) ? null : reqParam.defaultValue();
+                def.reqParamList.add(VarDef.of(i, getParameterName(p, reqParam.value()), defaultValue));
+            }
+        }
+
+        if (m.isAnnotationPresent(Coalesce.class)) {
+            checkCoalesce(m, mapping, streaming, params);
+            def.flights = control.singleFlight(mapping);
+        }
+
+        /* Compile path, so that concrete path is rendered without replacing */
+        def.path = PathTemplate.compile(mapping.getPath(), pathVars);
+        return def;
+    }
+
+    String getRequestParams(Object[] args) {
+        if (reqParamList.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (VarDef v : reqParamList) {
+            Object value = args[v.index];
+            sb.append(", ").append(v.name).append("=").append(value);
+        }
+        return sb.toString();
+    }
+
+    /* Same as above from the query, parameters missing in the query are rendered with their default value */
+    String getRequestParams(MultiValueMap<String, String> query) {
+        if (reqParamList.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (VarDef v : reqParamList) {
+            String value = query.getFirst(v.name);
+            sb.append(", ").append(v.name).append("=").append(value != null ? value : v.defaultValue);
+        }
+        return sb.toString();
+    }
+
+    private static String getParameterName(Parameter p, String annotatedName) {
+        return annotatedName.isEmpty() ? p.getName() : annotatedName;
+    }
+
+    /* Key of a coalesced call must cover everything its result depends on, so any other argument is rejected */
+    private static void checkCoalesce(Method m, MappingDef mapping, boolean streaming, Parameter[] params) {
+        if (mapping.getMethod() != RequestMethod.GET || streaming) {
+            throw new IllegalStateException("@Coalesce requires a GET handler returning Mono: " + m);
+        }
+        for (Parameter p : params) {
+            if (!p.isAnnotationPresent(PathVariable.class) && !p.isAnnotationPresent(RequestParam.class)) {
+                throw new IllegalStateException("@Coalesce handler may only take path variables and request params: " + m);
+            }
+        }
+    }
+
+    /* Streams hold a permit for as long as the client reads, so only Mono endpoints are limited */
+    private static ConcurrencyLimiter getLimiter(Class<?> clazz, Method m, MappingDef mapping, InterceptControl control) {
+        ConcurrencyLimit limit = m.getAnnotation(ConcurrencyLimit.class);
+        if (limit == null) {
+            limit = clazz.getAnnotation(ConcurrencyLimit.class);
+        }
+        if (limit != null && limit.exempt()) {
+            return null;
+        }
+        return control.limiter(limit != null && !limit.group().isEmpty() ? limit.group() : mapping.toString());
+    }
+
+    private static LogSettings getLogSettings(Method m, InterceptProperties properties) {
+        InterceptProperties.Log defaults = properties.getLog();
+        LogPolicy policy = m.getAnnotation(LogPolicy.class);
+        if (policy == null) {
+            return LogSettings.of(defaults.getSampleRate(), defaults.getMaxReqChars(), defaults.getMaxRspChars(),
+                    defaults.isErrorsOnly(), defaults.getLevel(), defaults.getSlowMillis());
+        }
+
+        return LogSettings.of(
+                policy.sampleRate() >= 0 ? policy.sampleRate() : defaults.getSampleRate(),
+                policy.maxReqChars() >= 0 ? policy.maxReqChars() : defaults.getMaxReqChars(),
+                policy.maxRspChars() >= 0 ? policy.maxRspChars() : defaults.getMaxRspChars(),
+                policy.errorsOnly() || defaults.isErrorsOnly(),
+                policy.level().isEmpty() ? defaults.getLevel() : Level.valueOf(policy.level().toUpperCase(Locale.ROOT)),
+                policy.slowMillis() >= 0 ? policy.slowMillis() : defaults.getSlowMillis());
+    }
+
+    private static MappingDef getRequestMapping(Class<?> clazz, Method method) {
+        String pathPrefix = "";
+        RequestMapping classMapping = clazz.getAnnotation(RequestMapping.class);
+        if (classMapping != null) {
+            pathPrefix = getRequestMappingPath(classMapping.value(), classMapping.path());
+        }
+
+        RequestMapping rm = method.getAnnotation(RequestMapping.class);
+        if (rm != null && rm.method().length > 0) {
+            return MappingDef.of(rm.method()[0], PathTemplate.normalize(pathPrefix, getRequestMappingPath(rm.value(), rm.path())));
+        }
+
+        GetMapping get = method.getAnnotation(GetMapping.class);
+        if (get != null) {
+            return MappingDef.of(RequestMethod.GET, PathTemplate.normalize(pathPrefix, getRequestMappingPath(get.value(), get.path())));
+        }
+
+        PostMapping post = method.getAnnotation(PostMapping.class);
+        if (post != null) {
+            return MappingDef.of(RequestMethod.POST, PathTemplate.normalize(pathPrefix, getRequestMappingPath(post.value(), post.path())));
+        }
+        return null;
+    }
+
+    private static String getRequestMappingPath(String[] value, String[] path) {
+        if (value.length > 0) {
+            return value[0];
+        }
+        if (path.length > 0) {
+            return path[0];
+        }
+        return "";
+    }
+
+    @RequiredArgsConstructor(staticName = "of")
+    static class VarDef {
+        private final int index;
+        private final String name;
+        private final String defaultValue;
+    }
+}
@@ -0,0 +1,176 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerAdapter;
+import org.springframework.web.reactive.HandlerResult;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.log.RequestLogger;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetricsRegistry;
+import ru.abagiev.examples.spring.intercept.rest.ErrorHandler;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Alternative to {@link BeanProcessor}: instead of subclassing every REST controller with CGLIB, handler methods
+ * resolved by WebFlux are wrapped once here, in front of the standard {@link RequestMappingHandlerAdapter}.
+ * Controllers stay plain beans, no classes are generated and no second controller instance is constructed.
+ * <p>
+ * Differences to the proxy: the logged path is the request path, the request body is logged as received (up to
+ * the policy limit) and the measured time includes argument resolution.
+ */
+@Component
+@ConditionalOnProperty(prefix = "intercept", name = "mode", havingValue = "handler")
+@Slf4j
+public class HandlerInterceptAdapter implements HandlerAdapter, Ordered {
+
+    private final RequestMappingHandlerAdapter delegate;
+    private final Map<Method, HandlerDef> handlers = new HashMap<>();
+    private final HandlerObserver observer;
+
+    public HandlerInterceptAdapter(RequestMappingHandlerAdapter delegate, RequestMappingHandlerMapping mapping,
+                                   RequestLogger requestLogger, InterceptProperties properties,
+                                   EndpointMetricsRegistry metricsRegistry, InterceptControl control) {
+        this.delegate = delegate;
+        this.observer = new HandlerObserver(requestLogger, properties, control);
+
+        /* Mapping is initialized before it is injected, so every handler method is known here */
+        Set<Class<?>> controllers = new HashSet<>();
+        for (HandlerMethod hm : mapping.getHandlerMethods().values()) {
+            Class<?> clazz = hm.getBeanType();
+            if (!clazz.isAnnotationPresent(RestController.class)) {
+                continue;
+            }
+            if (controllers.add(clazz)) {
+                log.info("Registering REST: " + clazz.getSimpleName());
+            }
+
+            HandlerDef def = HandlerDef.scan(clazz, hm.getMethod(), properties, metricsRegistry, control);
+            if (def != null) {
+                handlers.put(hm.getMethod(), def);
+            }
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        /* Ahead of the delegate, which is also registered as an adapter */
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public boolean supports(Object handler) {
+        return handler instanceof HandlerMethod && handlers.containsKey(((HandlerMethod) handler).getMethod());
+    }
+
+    @Override
+    public Mono<HandlerResult> handle(ServerWebExchange exchange, Object handler) {
+        HandlerDef def = handlers.get(((HandlerMethod) handler).getMethod());
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().pathWithinApplication().value();
+        String reqParams = def.getRequestParams(request.getQueryParams());
+
+        /* Body is peeked while the delegate decodes it, only when it is going to be rendered */
+        BodyCapture body = null;
+        ServerWebExchange target = exchange;
+        int maxReqChars = def.settings.getSettings().getMaxReqChars();
+        if (def.hasBodyDto && maxReqChars > 0) {
+            BodyCapture capture = new BodyCapture(maxReqChars);
+            target = exchange.mutate().request(new ServerHttpRequestDecorator(request) {
+                @Override
+                public Flux<DataBuffer> getBody() {
+                    return super.getBody().doOnNext(capture::append);
+                }
+            }).build();
+            body = capture;
+        }
+
+        BodyCapture req = body;
+        long start = nanoTime();
+        Method method = ((HandlerMethod) handler).getMethod();
+        return delegate.handle(target, handler)
+                .map(result -> {
+                    /* Handler threw before returning a publisher, the delegate has already rendered the error */
+                    if (!method.equals(result.getReturnTypeSource().getMethod())) {
+                        observer.failed(def, handledError(exchange, def), path, req, reqParams, start);
+                        return result;
+                    }
+                    Object value = observer.observe(def, result.getReturnValue(), path, req, reqParams, start);
+                    HandlerResult observed = new HandlerResult(result.getHandler(), value, result.getReturnTypeSource());
+                    if (result.hasExceptionHandler()) {
+                        observed.setExceptionHandler(result::applyExceptionHandler);
+                    }
+                    return observed;
+                })
+                .doOnError(e -> observer.failed(def, e, path, req, reqParams, start));
+    }
+
+    /* Error rendered by the exception handler, a generic one if the handler didn't keep it */
+    private static Throwable handledError(ServerWebExchange exchange, HandlerDef def) {
+        Object error = exchange.getAttributes().get(ErrorHandler.ERROR_ATTRIBUTE);
+        return error instanceof Throwable ? (Throwable) error : new RuntimeException("Handler failed: " + def.mapping);
+    }
+
+    /* Leading part of the raw request body, rendered by the request log as any other char sequence */
+    private static class BodyCapture implements CharSequence {
+        private final StringBuilder sb = new StringBuilder();
+        private final int limit;
+
+        BodyCapture(int limit) {
+            this.limit = limit;
+        }
+
+        void append(DataBuffer buffer) {
+            int remaining = limit - sb.length();
+            if (remaining <= 0) {
+                return;
+            }
+
+            /* Bytes as an upper bound of chars, a multibyte char cut at the limit is decoded as a replacement */
+            ByteBuffer bytes = buffer.asByteBuffer();
+            if (bytes.remaining() > remaining) {
+                bytes.limit(bytes.position() + remaining);
+            }
+            sb.append(StandardCharsets.UTF_8.decode(bytes));
+        }
+
+        @Override
+        public int length() {
+            return sb.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return sb.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return sb.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
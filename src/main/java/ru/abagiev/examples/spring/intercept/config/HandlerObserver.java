@@ -0,0 +1,179 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.event.Level;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import ru.abagiev.examples.spring.intercept.limit.ConcurrencyLimiter;
+import ru.abagiev.examples.spring.intercept.model.LibraryException;
+import ru.abagiev.examples.spring.intercept.trace.RequestTrace;
+import ru.abagiev.examples.spring.intercept.log.LogSettings;
+import ru.abagiev.examples.spring.intercept.log.RequestLogEvent;
+import ru.abagiev.examples.spring.intercept.log.RequestLogger;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.nanoTime;
+
+/*
+ * Metrics, request log, concurrency limit and coalescing around the publisher returned by a handler, shared by both
+ * interception modes. Coalesced calls are observed and limited one by one, each of them is a request being answered.
+ */
+@RequiredArgsConstructor
+class HandlerObserver {
+
+    private final RequestLogger requestLogger;
+    private final InterceptProperties properties;
+    private final InterceptControl control;
+
+    Object observe(HandlerDef def, Object result, String path, Object req, String reqParams, long start) {
+        if (result instanceof Mono) {
+            Mono<?> mono = (Mono<?>) result;
+            if (def.flights != null) {
+                mono = def.flights.run(path + reqParams, mono);
+            }
+            mono = observeMono(def, mono, path, req, reqParams, start);
+            return def.limiter != null ? limit(def.limiter, mono) : mono;
+        }
+        if (result instanceof Flux) {
+            return observeFlux(def, (Flux<?>) result, path, req, reqParams, start);
+        }
+        return error(def, new RuntimeException("Method returned no publisher: " + def.mapping));
+    }
+
+    /* Handler failed before returning a publisher */
+    void failed(HandlerDef def, Throwable e, String path, Object req, String reqParams, long start) {
+        long nanos = nanoTime() - start;
+        def.metrics.record(nanos, isFailure(e));
+        log(def, path, req, reqParams, null, e, nanos, null, null);
+    }
+
+    Object error(HandlerDef def, Throwable e) {
+        return def.streaming ? Flux.error(e) : Mono.error(e);
+    }
+
+    /*
+     * A permit is taken on subscription, so a call is admitted when it is about to run. Rejected calls are answered
+     * right away and stay out of endpoint metrics and the request log, they are counted by the limiter.
+     */
+    private static Mono<?> limit(ConcurrencyLimiter limiter, Mono<?> mono) {
+        return Mono.defer(() -> {
+            if (!limiter.tryAcquire()) {
+                return Mono.error(limiter.getRejection());
+            }
+            long start = nanoTime();
+            return mono
+                    .doOnSuccessOrError((rsp, error) -> limiter.sample(start))
+                    .doFinally(signal -> limiter.release());
+        });
+    }
+
+    /* Context is looked up only while tracing is on, the trace of a sampled request is in the context of the exchange */
+    private Mono<?> observeMono(HandlerDef def, Mono<?> mono, String path, Object req, String reqParams, long start) {
+        if (!properties.getTrace().isEnabled()) {
+            return observeMono(def, mono, path, req, reqParams, start, null);
+        }
+        return Mono.subscriberContext()
+                .flatMap(context -> observeMono(def, mono, path, req, reqParams, start, RequestTrace.of(context)));
+    }
+
+    private Flux<?> observeFlux(HandlerDef def, Flux<?> flux, String path, Object req, String reqParams, long start) {
+        if (!properties.getTrace().isEnabled()) {
+            return observeFlux(def, flux, path, req, reqParams, start, null);
+        }
+        return Mono.subscriberContext()
+                .flatMapMany(context -> observeFlux(def, flux, path, req, reqParams, start, RequestTrace.of(context)));
+    }
+
+    private Mono<?> observeMono(HandlerDef def, Mono<?> mono, String path, Object req, String reqParams, long start,
+                                RequestTrace trace) {
+        EndpointMetrics metrics = def.metrics;
+        return mono
+                .doOnSubscribe(s -> {
+                    metrics.enter();
+                    if (trace != null) {
+                        trace.subscribed();
+                    }
+                })
+                .doOnSuccessOrError((rsp, error) -> {
+                    long nanos = nanoTime() - start;
+                    metrics.record(nanos, isFailure(error));
+                    log(def, path, req, reqParams, rsp, error, nanos, null, trace);
+                })
+                .doFinally(signal -> metrics.exit());
+    }
+
+    private Flux<?> observeFlux(HandlerDef def, Flux<?> flux, String path, Object req, String reqParams, long start,
+                                RequestTrace trace) {
+        /* Elements are only counted, never buffered or rendered; state is per subscription in case of a resubscribe */
+        EndpointMetrics metrics = def.metrics;
+        return Flux.defer(() -> {
+            FluxCall call = new FluxCall();
+            return flux
+                    .doOnSubscribe(s -> {
+                        metrics.enter();
+                        if (trace != null) {
+                            trace.subscribed();
+                        }
+                    })
+                    .doOnNext(v -> {
+                        if (call.elements++ == 0) {
+                            call.firstNanos = nanoTime() - start;
+                        }
+                    })
+                    .doOnError(e -> call.error = e)
+                    .doFinally(signal -> {
+                        long nanos = nanoTime() - start;
+                        boolean cancelled = signal == SignalType.CANCEL;
+                        metrics.exit();
+                        metrics.recordStream(nanos, call.firstNanos, call.elements, isFailure(call.error), cancelled);
+                        call.cancelled = cancelled;
+                        log(def, path, req, reqParams, null, call.error, nanos, call, trace);
+                    });
+        });
+    }
+
+    /* Traced calls are handed over to the trace, which is emitted once the response is written */
+    private void log(HandlerDef def, String path, Object req, String reqParams, Object rsp, Throwable error, long nanos,
+                     FluxCall call, RequestTrace trace) {
+        LogSettings settings = def.settings.getSettings();
+        boolean failure = isFailure(error);
+        boolean slow = settings.isSlow(nanos);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (slow) {
+            control.slowCall(def.mapping, path, reqParams, millis, error, trace);
+        }
+
+        /* Payloads are rendered into the event on this thread, only for a call that is going to be written */
+        RequestLogEvent event = null;
+        Level level = failure ? Level.ERROR : slow ? Level.WARN : settings.getLevel();
+        if ((slow || settings.shouldLog(failure)) && requestLogger.accepts(def.log, level, failure)) {
+            event = new RequestLogEvent(def.log, def.mapping, path, req, reqParams, rsp, error, millis,
+                    settings.getMaxReqChars(), settings.getMaxRspChars(),
+                    call != null ? call.elements : -1,
+                    call != null && call.firstNanos >= 0 ? TimeUnit.NANOSECONDS.toMillis(call.firstNanos) : -1,
+                    call != null && call.cancelled, level, trace);
+        }
+
+        if (trace != null) {
+            trace.complete(def.metrics, event);
+        } else if (event != null) {
+            requestLogger.log(event);
+        }
+    }
+
+    /* Expected outcomes, such as a missing book, are answered with a client status and sampled like successful calls */
+    private static boolean isFailure(Throwable error) {
+        return error != null && !(error instanceof LibraryException);
+    }
+
+    /* Per-subscription state of a streaming handler, signals of a single subscription are serialized */
+    private static class FluxCall {
+        private long firstNanos = -1;
+        private long elements;
+        private Throwable error;
+        private boolean cancelled;
+    }
+}
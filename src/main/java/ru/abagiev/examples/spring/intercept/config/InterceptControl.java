@@ -0,0 +1,136 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import ru.abagiev.examples.spring.intercept.coalesce.CoalesceSnapshot;
+import ru.abagiev.examples.spring.intercept.coalesce.SingleFlight;
+import ru.abagiev.examples.spring.intercept.limit.ConcurrencyLimiter;
+import ru.abagiev.examples.spring.intercept.limit.LimiterSnapshot;
+import ru.abagiev.examples.spring.intercept.log.LogSettings;
+import ru.abagiev.examples.spring.intercept.trace.RequestTrace;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interception settings of every endpoint, adjustable at runtime, concurrency limits, coalesced calls and the latest
+ * slow calls.
+ * <p>
+ * Settings are immutable and replaced as a whole, so a call reads them with a single volatile read and never sees
+ * a partial update. Slow calls go to a ring that overwrites the oldest ones, writers only claim a sequence number.
+ */
+@Component
+public class InterceptControl {
+
+    private final InterceptProperties properties;
+    private final Map<MappingDef, Endpoint> endpoints = new ConcurrentHashMap<>();
+    /* By endpoint or group name */
+    private final Map<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final Map<MappingDef, SingleFlight<String>> flights = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<SlowCall> slowCalls;
+    private final int slowMask;
+    private final AtomicLong slowSequence = new AtomicLong();
+
+    public InterceptControl(InterceptProperties properties) {
+        this.properties = properties;
+        int capacity = Integer.highestOneBit(Math.max(1, properties.getLog().getSlowCapacity() - 1)) << 1;
+        this.slowCalls = new AtomicReferenceArray<>(capacity);
+        this.slowMask = capacity - 1;
+    }
+
+    Endpoint register(MappingDef mapping, LogSettings defaults) {
+        return endpoints.computeIfAbsent(mapping, key -> new Endpoint(key, defaults));
+    }
+
+    /* Null while limiting is disabled */
+    ConcurrencyLimiter limiter(String name) {
+        InterceptProperties.Limit config = properties.getLimit();
+        if (!config.isEnabled()) {
+            return null;
+        }
+        return limiters.computeIfAbsent(name, key -> new ConcurrencyLimiter(key, config));
+    }
+
+    public List<LimiterSnapshot> getLimits() {
+        List<LimiterSnapshot> list = new ArrayList<>();
+        for (ConcurrencyLimiter limiter : limiters.values()) {
+            list.add(limiter.snapshot());
+        }
+        list.sort(Comparator.comparing(LimiterSnapshot::getName));
+        return list;
+    }
+
+    SingleFlight<String> singleFlight(MappingDef mapping) {
+        return flights.computeIfAbsent(mapping, key -> new SingleFlight<>(key.toString()));
+    }
+
+    public List<CoalesceSnapshot> getCoalescing() {
+        List<CoalesceSnapshot> list = new ArrayList<>();
+        for (SingleFlight<String> flight : flights.values()) {
+            list.add(flight.snapshot());
+        }
+        list.sort(Comparator.comparing(CoalesceSnapshot::getName));
+        return list;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        List<Endpoint> list = new ArrayList<>(endpoints.values());
+        list.sort(Comparator.comparing((Endpoint e) -> e.getMapping().getPath())
+                .thenComparing(e -> e.getMapping().getMethod()));
+        return list;
+    }
+
+    /* Null for an unknown endpoint */
+    public Endpoint getEndpoint(MappingDef mapping) {
+        return endpoints.get(mapping);
+    }
+
+    void slowCall(MappingDef mapping, String path, String reqParams, long millis, Throwable error, RequestTrace trace) {
+        long sequence = slowSequence.getAndIncrement();
+        slowCalls.set((int) (sequence & slowMask), new SlowCall(sequence, System.currentTimeMillis(), mapping.getMethod().name(),
+                path, reqParams.isEmpty() ? reqParams : reqParams.substring(2), millis, error != null ? error.getMessage() : null, trace));
+    }
+
+    /* Newest first */
+    public List<SlowCall> getSlowCalls(int limit) {
+        List<SlowCall> list = new ArrayList<>();
+        long end = slowSequence.get();
+        long start = Math.max(0, end - slowCalls.length());
+        for (long sequence = end - 1; sequence >= start && list.size() < limit; sequence--) {
+            /* Slot may be claimed but not yet written, or already overwritten by a newer call */
+            SlowCall call = slowCalls.get((int) (sequence & slowMask));
+            if (call != null && call.getSequence() == sequence) {
+                list.add(call);
+            }
+        }
+        return list;
+    }
+
+    @Getter
+    public static class Endpoint {
+        private final MappingDef mapping;
+        /* From @LogPolicy and intercept.log.* */
+        private final LogSettings defaults;
+        private volatile LogSettings settings;
+
+        Endpoint(MappingDef mapping, LogSettings defaults) {
+            this.mapping = mapping;
+            this.defaults = defaults;
+            this.settings = defaults;
+        }
+
+        public void update(LogSettings settings) {
+            this.settings = settings;
+        }
+
+        public void reset() {
+            this.settings = defaults;
+        }
+    }
+}
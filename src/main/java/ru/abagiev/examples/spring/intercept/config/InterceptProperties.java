@@ -0,0 +1,99 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.event.Level;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import ru.abagiev.examples.spring.intercept.log.OverflowPolicy;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Component
+@ConfigurationProperties(prefix = "intercept")
+@Getter
+@Setter
+public class InterceptProperties {
+
+    /* cglib - subclass every REST controller, handler - decorate the WebFlux handler adapter, no generated classes */
+    private Mode mode = Mode.CGLIB;
+    private Log log = new Log();
+    private Trace trace = new Trace();
+    private Limit limit = new Limit();
+
+    @Getter
+    @Setter
+    public static class Log {
+        /* sync - log on the calling thread, async - hand events over to a background writer */
+        private LogMode mode = LogMode.SYNC;
+        /* Ring buffer capacity for async mode, rounded up to a power of two */
+        private int bufferSize = 8192;
+        /* Max events written per consumer cycle */
+        private int batchSize = 256;
+        private OverflowPolicy overflow = OverflowPolicy.DROP;
+        /* Keep every n-th successful call under SAMPLE policy when the buffer is 3/4 full */
+        private int sampleEvery = 10;
+        /* Defaults for handlers without own @LogPolicy values */
+        private double sampleRate = 1.0;
+        private int maxReqChars = 1024;
+        private int maxRspChars = 1024;
+        private boolean errorsOnly = false;
+        /* Level of successful calls */
+        private Level level = Level.INFO;
+        /* Default slow call threshold, zero disables, and how many of the latest slow calls are kept */
+        private long slowMillis = 0;
+        private int slowCapacity = 256;
+    }
+
+    @Getter
+    @Setter
+    public static class Trace {
+        /* off | sample - trace a share of requests | all */
+        private TraceMode mode = TraceMode.OFF;
+        private double sampleRate = 0.01;
+
+        public boolean isEnabled() {
+            return mode != TraceMode.OFF;
+        }
+
+        public boolean sample() {
+            return mode == TraceMode.ALL || (mode == TraceMode.SAMPLE && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Limit {
+        private boolean enabled = false;
+        /* Limit bounds, in concurrent calls of an endpoint or group */
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 1000;
+        /* Limit is recalculated once per window with at least that many calls completed */
+        private Duration window = Duration.ofMillis(100);
+        private int minSamples = 10;
+        /* Share of the calculated limit applied per window */
+        private double smoothing = 0.2;
+        /* Latency growth over the long-term baseline that is tolerated without shrinking the limit */
+        private double tolerance = 1.5;
+        /* Retry-After of rejected calls */
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    public enum Mode {
+        CGLIB,
+        HANDLER
+    }
+
+    public enum TraceMode {
+        OFF,
+        SAMPLE,
+        ALL
+    }
+
+    public enum LogMode {
+        SYNC,
+        ASYNC
+    }
+}
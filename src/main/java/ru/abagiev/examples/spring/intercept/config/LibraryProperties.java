@@ -0,0 +1,83 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import ru.abagiev.examples.spring.intercept.exec.ExecutionStrategy;
+import ru.abagiev.examples.spring.intercept.exec.Operation;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "library")
+@Getter
+@Setter
+public class LibraryProperties {
+
+    private Persistence persistence = new Persistence();
+    private Cache cache = new Cache();
+    private Execution execution = new Execution();
+
+    @Getter
+    @Setter
+    public static class Persistence {
+        /* none - in memory only, snapshot - load on start and save binary snapshots */
+        private PersistenceMode mode = PersistenceMode.NONE;
+        private String snapshotPath = "data/library.snapshot";
+        /* Period of background snapshots, zero saves on shutdown only */
+        private Duration snapshotInterval = Duration.ZERO;
+        private Journal journal = new Journal();
+    }
+
+    @Getter
+    @Setter
+    public static class Journal {
+        /* Write-ahead journal, mutations complete only after their batch is forced to disk */
+        private boolean enabled = false;
+        private String path = "data/library.journal";
+        /* Max records per write + force */
+        private int batchSize = 1024;
+        /* How long the writer waits for more records to fill a batch, zero batches only what is already queued */
+        private Duration maxDelay = Duration.ZERO;
+        /* Segment size in bytes that starts a new one and a snapshot, zero disables compaction, at most 1 GiB */
+        private long compactSize = 64L * 1024 * 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        /* Bound of encoded responses held by the cache, zero disables caching */
+        private long maxBytes = 32L * 1024 * 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Execution {
+        /* Strategy per operation kind: inline | elastic | fixed | virtual */
+        private ExecutionStrategy read = ExecutionStrategy.INLINE;
+        private ExecutionStrategy write = ExecutionStrategy.INLINE;
+        private ExecutionStrategy bulk = ExecutionStrategy.INLINE;
+        /* Thread cap of an elastic pool, threads idle for a minute are stopped */
+        private int elasticThreads = 10 * Runtime.getRuntime().availableProcessors();
+        private int fixedThreads = Runtime.getRuntime().availableProcessors();
+        /* Tasks waiting per pool, the ones above are rejected */
+        private int queueSize = 100_000;
+
+        public ExecutionStrategy strategy(Operation op) {
+            switch (op) {
+                case READ:
+                    return read;
+                case WRITE:
+                    return write;
+                default:
+                    return bulk;
+            }
+        }
+    }
+
+    public enum PersistenceMode {
+        NONE,
+        SNAPSHOT
+    }
+}
@@ -0,0 +1,19 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+@Getter
+@EqualsAndHashCode
+@RequiredArgsConstructor(staticName = "of")
+public class MappingDef {
+    private final RequestMethod method;
+    private final String path;
+
+    @Override
+    public String toString() {
+        return method + " " + path;
+    }
+}
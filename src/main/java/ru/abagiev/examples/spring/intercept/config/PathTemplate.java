@@ -0,0 +1,122 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request mapping path compiled into literal parts and handler argument indexes,
+ * so the concrete path of a call is rendered in a single pass.
+ */
+@EqualsAndHashCode(of = "pattern")
+public class PathTemplate {
+
+    private static final int VAR_LENGTH_HINT = 8;
+
+    @Getter
+    private final String pattern;
+    /* literals.length == argIndexes.length + 1 */
+    private final String[] literals;
+    private final int[] argIndexes;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private PathTemplate(String pattern, String[] literals, int[] argIndexes, String[] placeholders) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.argIndexes = argIndexes;
+        this.placeholders = placeholders;
+
+        int length = 0;
+        for (String l : literals) {
+            length += l.length();
+        }
+        this.literalLength = length;
+    }
+
+    /* Unknown variables stay in the rendered path as is */
+    public static PathTemplate compile(String pattern, Map<String, Integer> varIndexes) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < pattern.length()) {
+            int open = pattern.indexOf('{', pos);
+            int close = open < 0 ? -1 : pattern.indexOf('}', open);
+            if (close < 0) {
+                literal.append(pattern, pos, pattern.length());
+                break;
+            }
+
+            String placeholder = pattern.substring(open, close + 1);
+            Integer index = varIndexes.get(pattern.substring(open + 1, close));
+            literal.append(pattern, pos, open);
+            if (index == null) {
+                literal.append(placeholder);
+            } else {
+                literals.add(literal.toString());
+                indexes.add(index);
+                placeholders.add(placeholder);
+                literal.setLength(0);
+            }
+            pos = close + 1;
+        }
+        literals.add(literal.toString());
+
+        int[] argIndexes = new int[indexes.size()];
+        for (int i = 0; i < argIndexes.length; i++) {
+            argIndexes[i] = indexes.get(i);
+        }
+        return new PathTemplate(pattern, literals.toArray(new String[0]), argIndexes,
+                placeholders.toArray(new String[0]));
+    }
+
+    /* Joins path parts collapsing repeated slashes and dropping the trailing one */
+    public static String normalize(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            if (sb.length() == 0 || sb.charAt(sb.length() - 1) != '/') {
+                sb.append('/');
+            }
+            for (int i = 0; i < part.length(); i++) {
+                char c = part.charAt(i);
+                if (c != '/' || sb.charAt(sb.length() - 1) != '/') {
+                    sb.append(c);
+                }
+            }
+        }
+        while (sb.length() > 1 && sb.charAt(sb.length() - 1) == '/') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    public String render(Object[] args) {
+        if (argIndexes.length == 0) {
+            return literals[0];
+        }
+
+        StringBuilder sb = new StringBuilder(literalLength + argIndexes.length * VAR_LENGTH_HINT);
+        sb.append(literals[0]);
+        for (int i = 0; i < argIndexes.length; i++) {
+            Object value = args[argIndexes[i]];
+            if (value != null) {
+                sb.append(value);
+            } else {
+                sb.append(placeholders[i]);
+            }
+            sb.append(literals[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
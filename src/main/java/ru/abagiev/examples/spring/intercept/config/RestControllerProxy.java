@@ -1,225 +1,91 @@
 package ru.abagiev.examples.spring.intercept.config;
 
-import lombok.RequiredArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.cglib.proxy.MethodInterceptor;
 import org.springframework.cglib.proxy.MethodProxy;
-import org.springframework.web.bind.annotation.*;
-import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.log.RequestLogger;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetricsRegistry;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
-import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
 
 public class RestControllerProxy implements MethodInterceptor {
 
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
     private final Object bean;
-    private final Map<String, MethodDef> methods;
-    private final Logger log;
-    private String pathPrefix = "";
+    private final Map<Method, ProxiedMethod> methods;
+    private final HandlerObserver observer;
 
-    public RestControllerProxy(Object bean, Class<?> clazz) {
+    public RestControllerProxy(Object bean, Class<?> clazz, RequestLogger requestLogger, InterceptProperties properties,
+                               EndpointMetricsRegistry metricsRegistry, InterceptControl control) {
         this.bean = bean;
-        this.methods = new ConcurrentHashMap<>();
-        this.log = LoggerFactory.getLogger(clazz);
-
-        RequestMapping rm = clazz.getAnnotation(RequestMapping.class);
-        if (rm != null) {
-            this.pathPrefix = getRequestMappingPath(rm.value(), rm.path());
-        }
+        this.methods = new HashMap<>();
+        this.observer = new HandlerObserver(requestLogger, properties, control);
 
-        scanMethods(clazz);
-    }
-
-    private void scanMethods(Class<?> clazz) {
         for (Method m : clazz.getMethods()) {
-            /* Check that method is a request mapping method */
-            MappingDef mapping = getRequestMapping(m);
-            if (mapping == null) {
-                continue;
-            }
-
-            /* Check that return type is Mono */
-            Class<?> returnType = m.getReturnType();
-            if (!returnType.isAssignableFrom(Mono.class)) {
-                continue;
+            HandlerDef def = HandlerDef.scan(clazz, m, properties, metricsRegistry, control);
+            if (def != null) {
+                methods.put(m, new ProxiedMethod(def, createInvoker(m)));
             }
+        }
+    }
 
-            MethodDef def = new MethodDef();
-            def.mapping = mapping;
-            methods.put(m.getName(), def);
-
-            /* Scan for arguments */
-            Parameter[] params = m.getParameters();
-            for (int i = 0; i < params.length; i++) {
-                Parameter p = params[i];
-                if (p.isAnnotationPresent(RequestBody.class) && !def.hasBodyDto) {
-                    def.hasBodyDto = true;
-                    def.bodyDtoIndex = i;
-                } else if (p.isAnnotationPresent(PathVariable.class)) {
-                    def.pathVarList.add(VarDef.of(i, "{" + p.getName() + "}"));
-                } else if (p.isAnnotationPresent(RequestParam.class)) {
-                    def.reqParamList.add(VarDef.of(i, p.getName()));
-                }
-            }
+    private MethodHandle createInvoker(Method m) {
+        try {
+            /* Bind handler to the bean and spread arguments array, so invocation is a single invokeExact */
+            return MethodHandles.publicLookup().unreflect(m)
+                    .bindTo(bean)
+                    .asSpreader(Object[].class, m.getParameterCount())
+                    .asType(INVOKER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Handler method is not accessible: " + m, e);
         }
     }
 
     @Override
     public Object intercept(Object o, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
-        try {
-            /* Check if this is remote method */
-            MethodDef def = methods.get(method.getName());
-            if (def == null) {
-                return method.invoke(bean, args);
-            }
+        /* Check if this is remote method */
+        ProxiedMethod proxied = methods.get(method);
+        if (proxied == null) {
+            return methodProxy.invoke(bean, args);
+        }
 
+        HandlerDef def = proxied.def;
+        try {
             /* Fetch arguments */
             Object bodyDto = def.hasBodyDto ? args[def.bodyDtoIndex] : null;
-            String path = getPath(def, args);
-            String reqParams = getRequestParams(def.reqParamList, args);
+            String path = def.path.render(args);
+            String reqParams = def.getRequestParams(args);
 
             /* Save current nanoseconds */
-            long millis = currentTimeMillis();
+            long start = nanoTime();
 
             try {
                 /* Invoke method */
-                Mono<?> mono = (Mono<?>) method.invoke(bean, args);
-                if (mono == null) {
-                    return Mono.error(new RuntimeException("Method returned no mono: " + method.getName()));
-                }
-
-                /* Log result and return mono */
-                return mono.doOnSuccessOrError((rsp, error) -> {
-                    log(def.mapping.method, path, bodyDto, reqParams, rsp, error, currentTimeMillis() - millis);
-                });
-            } catch (InvocationTargetException e) {
-                log(def.mapping.method, path, bodyDto, reqParams, null, e.getCause(), currentTimeMillis() - millis);
-                return Mono.error(e.getCause());
+                Object result = (Object) proxied.invoker.invokeExact(args);
+                return observer.observe(def, result, path, bodyDto, reqParams, start);
+            } catch (Throwable e) {
+                observer.failed(def, e, path, bodyDto, reqParams, start);
+                return observer.error(def, e);
             }
         } catch (Throwable e) {
-            return Mono.error(e);
-        }
-    }
-
-    private MappingDef getRequestMapping(Method method) {
-        RequestMapping rm = method.getAnnotation(RequestMapping.class);
-        if (rm != null && rm.method().length > 0) {
-            return MappingDef.of(rm.method()[0], joinPrefix(getRequestMappingPath(rm.value(), rm.path())));
-        }
-
-        GetMapping get = method.getAnnotation(GetMapping.class);
-        if (get != null) {
-            return MappingDef.of(RequestMethod.GET, joinPrefix(getRequestMappingPath(get.value(), get.path())));
-        }
-
-        PostMapping post = method.getAnnotation(PostMapping.class);
-        if (post != null) {
-            return MappingDef.of(RequestMethod.POST, joinPrefix(getRequestMappingPath(post.value(), post.path())));
+            return observer.error(def, e);
         }
-        return null;
     }
 
-    private String joinPrefix(String path) {
-        return (pathPrefix + "/" +  path).replace("///", "/").replace("//", "/");
-    }
+    private static class ProxiedMethod {
+        private final HandlerDef def;
+        private final MethodHandle invoker;
 
-    private String getRequestMappingPath(String[] value, String[] path) {
-        if (value.length > 0) {
-            return value[0];
+        ProxiedMethod(HandlerDef def, MethodHandle invoker) {
+            this.def = def;
+            this.invoker = invoker;
         }
-        if (path.length > 0) {
-            return path[0];
-        }
-        return "";
-    }
-
-    private String getPath(MethodDef def, Object[] args) {
-        String path = def.mapping.path;
-        for (VarDef v : def.pathVarList) {
-            Object value = args[v.index];
-            if (value != null) {
-                path = path.replace(v.name, value.toString());
-            }
-        }
-        return path;
-    }
-
-    private String getRequestParams(List<VarDef> reqParamList, Object[] args) {
-        StringBuilder sb = new StringBuilder();
-        for (VarDef v : reqParamList) {
-            Object value = args[v.index];
-            sb.append(", ").append(v.name).append("=").append(value);
-        }
-        return sb.toString();
-    }
-
-    private void log(RequestMethod method, String path, Object req, String reqParams, Object rsp, Throwable error, Long millis) {
-        StringBuilder sb = new StringBuilder();
-
-        switch (method) {
-            case GET:
-                sb.append("GET ");
-                break;
-            case POST:
-                sb.append("POST ");
-                break;
-            default:
-                sb.append(method.toString()).append(" ");
-                break;
-        }
-
-        sb.append(path);
-
-        if (req != null) {
-            sb.append(", req=").append(req.toString());
-        }
-
-        sb.append(reqParams);
-
-        if (rsp != null) {
-            sb.append(", rsp=").append(rsp.toString());
-        }
-
-        if (error != null) {
-            sb.append(", error=").append(error.getMessage());
-        }
-
-        if (millis != null) {
-            sb.append(", time=").append(millis);
-        }
-
-        if (error != null) {
-            log.error(sb.toString());
-        } else {
-            log.info(sb.toString());
-        }
-    }
-
-    private static class MethodDef {
-        private MappingDef mapping;
-        private boolean hasBodyDto;
-        private List<VarDef> pathVarList = new ArrayList<>();
-        private List<VarDef> reqParamList = new ArrayList<>();
-        private int bodyDtoIndex;
-    }
-
-    @RequiredArgsConstructor(staticName = "of")
-    private static class MappingDef {
-        private final RequestMethod method;
-        private final String path;
-    }
-
-    @RequiredArgsConstructor(staticName = "of")
-    private static class VarDef {
-        private final int index;
-        private final String name;
     }
 }
@@ -0,0 +1,25 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.abagiev.examples.spring.intercept.trace.RequestTrace;
+
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class SlowCall {
+    private final long sequence;
+    private final long timestamp;
+    private final String method;
+    private final String path;
+    private final String params;
+    private final long millis;
+    private final String error;
+    @Getter(AccessLevel.NONE)
+    private final RequestTrace trace;
+
+    /* Stages of a traced call, rendered when read since the response stage ends after the call is captured */
+    public String getTrace() {
+        return trace != null ? trace.format(new StringBuilder()).toString() : null;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import ru.abagiev.examples.spring.intercept.cache.EncodedEncoder;
+
+import java.util.Arrays;
+
+@Configuration
+public class WebConfig {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+    public static final String TEXT_CSV_VALUE = "text/csv";
+    public static final MediaType TEXT_CSV = MediaType.valueOf(TEXT_CSV_VALUE);
+
+    /*
+     * Runs after the Boot Jackson customizer, teaches JSON encoder to write Flux as newline delimited JSON.
+     * Cached encodings are written by a typed encoder, which takes precedence over the Jackson one.
+     */
+    @Bean
+    @Order(1)
+    public CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> {
+            Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper,
+                    MediaType.APPLICATION_JSON, new MediaType("application", "*+json"), APPLICATION_NDJSON);
+            encoder.setStreamingMediaTypes(Arrays.asList(MediaType.APPLICATION_STREAM_JSON, APPLICATION_NDJSON));
+            configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+            configurer.customCodecs().encoder(new EncodedEncoder());
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package ru.abagiev.examples.spring.intercept.exec;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.beans.ConstructorProperties;
+
+@Getter
+@ToString
+@AllArgsConstructor(onConstructor_ = @ConstructorProperties({"operation", "strategy", "tasks", "rejected",
+        "queueMeanMicros", "queueP50Micros", "queueP99Micros", "queueMaxMicros"}))
+public class ExecutionSnapshot {
+    private final String operation;
+    private final String strategy;
+    private final long tasks;
+    /* Tasks not accepted because the queue was full */
+    private final long rejected;
+    /* Delay between subscription and start on a worker thread */
+    private final long queueMeanMicros;
+    private final long queueP50Micros;
+    private final long queueP99Micros;
+    private final long queueMaxMicros;
+}
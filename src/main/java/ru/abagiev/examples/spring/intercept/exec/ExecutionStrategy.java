@@ -0,0 +1,12 @@
+package ru.abagiev.examples.spring.intercept.exec;
+
+public enum ExecutionStrategy {
+    /* On the subscribing thread, which is the Netty event loop for requests */
+    INLINE,
+    /* Pool growing up to a thread cap and shrinking when idle, with a bounded queue */
+    ELASTIC,
+    /* Dedicated pool of a constant number of threads with a bounded queue */
+    FIXED,
+    /* Thread per task on JDK 21+, elastic on older runtimes */
+    VIRTUAL
+}
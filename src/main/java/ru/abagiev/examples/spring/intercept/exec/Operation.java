@@ -0,0 +1,11 @@
+package ru.abagiev.examples.spring.intercept.exec;
+
+/* Kinds of service operations, each one runs with its own execution strategy */
+public enum Operation {
+    /* Lookups by ID, pages, search */
+    READ,
+    /* Single item mutations */
+    WRITE,
+    /* Batches, imports, full listings and snapshots */
+    BULK
+}
@@ -0,0 +1,223 @@
+package ru.abagiev.examples.spring.intercept.exec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.abagiev.examples.spring.intercept.config.InterceptProperties;
+import ru.abagiev.examples.spring.intercept.config.LibraryProperties;
+import ru.abagiev.examples.spring.intercept.metrics.LatencyHistogram;
+import ru.abagiev.examples.spring.intercept.trace.RequestTrace;
+import ru.abagiev.examples.spring.intercept.trace.Stage;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Runs service operations with the execution strategy configured for their {@link Operation}. Inline operations
+ * are returned as is, the rest are subscribed on a scheduler of their own, so a slow store does not block the
+ * event loop and one kind of operation does not starve the others.
+ * <p>
+ * Queueing delay, the time from subscription to start on a worker thread, is recorded per operation. While
+ * tracing is on, queueing and the operation itself are also recorded as stages of the request trace.
+ */
+@Component
+@Slf4j
+public class OperationExecutor {
+
+    private final Lane[] lanes = new Lane[Operation.values().length];
+    private final InterceptProperties.Trace tracing;
+
+    public OperationExecutor(LibraryProperties properties, InterceptProperties interceptProperties) {
+        this.tracing = interceptProperties.getTrace();
+        LibraryProperties.Execution config = properties.getExecution();
+        for (Operation op : Operation.values()) {
+            lanes[op.ordinal()] = new Lane(op, config.strategy(op), config);
+        }
+    }
+
+    public <T> Mono<T> run(Operation op, Mono<T> mono) {
+        Lane lane = lanes[op.ordinal()];
+        if (!tracing.isEnabled()) {
+            return schedule(lane, mono, null);
+        }
+        return Mono.subscriberContext().flatMap(context -> {
+            RequestTrace trace = RequestTrace.of(context);
+            return schedule(lane, trace != null ? traced(mono, trace) : mono, trace);
+        });
+    }
+
+    /* Requests after the first one are also served on the worker */
+    public <T> Flux<T> run(Operation op, Flux<T> flux) {
+        Lane lane = lanes[op.ordinal()];
+        if (!tracing.isEnabled()) {
+            return schedule(lane, flux, null);
+        }
+        return Mono.subscriberContext().flatMapMany(context -> {
+            RequestTrace trace = RequestTrace.of(context);
+            return schedule(lane, trace != null ? traced(flux, trace) : flux, trace);
+        });
+    }
+
+    private static <T> Mono<T> schedule(Lane lane, Mono<T> mono, RequestTrace trace) {
+        if (lane.scheduler == null) {
+            return mono;
+        }
+
+        return Mono.defer(() -> {
+            long queued = nanoTime();
+            return Mono.defer(() -> {
+                lane.started(queued, trace);
+                return mono;
+            }).subscribeOn(lane.scheduler);
+        }).doOnError(lane::failed);
+    }
+
+    private static <T> Flux<T> schedule(Lane lane, Flux<T> flux, RequestTrace trace) {
+        if (lane.scheduler == null) {
+            return flux;
+        }
+
+        return Flux.defer(() -> {
+            long queued = nanoTime();
+            return Flux.defer(() -> {
+                lane.started(queued, trace);
+                return flux;
+            }).subscribeOn(lane.scheduler);
+        }).doOnError(lane::failed);
+    }
+
+    private static <T> Mono<T> traced(Mono<T> mono, RequestTrace trace) {
+        return Mono.defer(() -> {
+            long start = nanoTime();
+            /* On the value rather than completion, which may arrive after the response is already written */
+            return mono.doOnSuccessOrError((value, error) -> trace.record(Stage.SERVICE, start));
+        });
+    }
+
+    private static <T> Flux<T> traced(Flux<T> flux, RequestTrace trace) {
+        return Flux.defer(() -> {
+            long start = nanoTime();
+            return flux.doOnTerminate(() -> trace.record(Stage.SERVICE, start));
+        });
+    }
+
+    public List<ExecutionSnapshot> snapshot() {
+        List<ExecutionSnapshot> result = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            result.add(lane.snapshot());
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            if (lane.scheduler != null) {
+                lane.scheduler.dispose();
+            }
+        }
+    }
+
+    private static class Lane {
+        private final Operation op;
+        private final ExecutionStrategy strategy;
+        private final Scheduler scheduler;
+        private final LatencyHistogram queueDelay = new LatencyHistogram();
+        private final LongAdder rejected = new LongAdder();
+
+        Lane(Operation op, ExecutionStrategy strategy, LibraryProperties.Execution config) {
+            String name = "library-" + op.name().toLowerCase(Locale.ROOT);
+            ExecutorService executor;
+            switch (strategy) {
+                case ELASTIC:
+                    executor = pool(name, config.getElasticThreads(), config.getQueueSize(), true);
+                    break;
+                case FIXED:
+                    executor = pool(name, config.getFixedThreads(), config.getQueueSize(), false);
+                    break;
+                case VIRTUAL:
+                    executor = virtual();
+                    if (executor == null) {
+                        log.warn("Virtual threads are not supported by this JDK, {} operations run elastic", op);
+                        strategy = ExecutionStrategy.ELASTIC;
+                        executor = pool(name, config.getElasticThreads(), config.getQueueSize(), true);
+                    }
+                    break;
+                default:
+                    executor = null;
+            }
+
+            this.op = op;
+            this.strategy = strategy;
+            this.scheduler = executor != null ? Schedulers.fromExecutorService(executor) : null;
+        }
+
+        void started(long queued, RequestTrace trace) {
+            long now = nanoTime();
+            queueDelay.record(now - queued);
+            if (trace != null) {
+                trace.record(Stage.QUEUE, queued, now);
+            }
+        }
+
+        void failed(Throwable e) {
+            if (Exceptions.unwrap(e) instanceof RejectedExecutionException) {
+                rejected.increment();
+            }
+        }
+
+        ExecutionSnapshot snapshot() {
+            LatencyHistogram.Snapshot s = queueDelay.snapshot();
+            return new ExecutionSnapshot(op.name(), strategy.name(), s.getCount(), rejected.sum(),
+                    micros(s.getMean()), micros(s.getPercentile(50)), micros(s.getPercentile(99)), micros(s.getMax()));
+        }
+
+        private static long micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+
+        /* Threads above the core size are not started until the queue is full, so all of them are core threads
+           and idle ones time out instead */
+        private static ExecutorService pool(String name, int threads, int queueSize, boolean shrink) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), threadFactory(name));
+            executor.allowCoreThreadTimeOut(shrink);
+            return executor;
+        }
+
+        private static ThreadFactory threadFactory(String name) {
+            AtomicInteger counter = new AtomicInteger();
+            return r -> {
+                Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+
+        /* Looked up reflectively, the application is built for Java 8 */
+        private static ExecutorService virtual() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    }
+}
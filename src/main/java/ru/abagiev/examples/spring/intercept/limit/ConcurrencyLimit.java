@@ -0,0 +1,21 @@
+package ru.abagiev.examples.spring.intercept.limit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Concurrency limit of a handler method or of all handlers of a controller, see intercept.limit.*.
+ * Without the annotation every endpoint has a limit of its own.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConcurrencyLimit {
+
+    /* Endpoints of the same group share a single limit */
+    String group() default "";
+
+    /* Never limited, for endpoints that must answer under overload */
+    boolean exempt() default false;
+}
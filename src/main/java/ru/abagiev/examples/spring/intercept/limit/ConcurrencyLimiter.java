@@ -0,0 +1,132 @@
+package ru.abagiev.examples.spring.intercept.limit;
+
+import lombok.Getter;
+import ru.abagiev.examples.spring.intercept.config.InterceptProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Concurrency limit adapting to latency with a gradient: the limit shrinks as short-term latency grows above the
+ * long-term one and grows by a queue of about its square root while latency stays flat.
+ * <p>
+ * Admission is a CAS on the in-flight counter, latency samples go to adders. Once per window the caller that
+ * wins a CAS on the window deadline recomputes the limit, so the estimate state is only written by one thread at a
+ * time and the hot path never blocks or allocates.
+ */
+public class ConcurrencyLimiter {
+
+    @Getter
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+    private final int minSamples;
+    private final double smoothing;
+    private final double tolerance;
+
+    @Getter
+    private final LimitExceededException rejection;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    /* Current window */
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder sampleNanos = new LongAdder();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicLong windowEnd;
+
+    /* Written by the window winner only */
+    private volatile double limit;
+    private volatile long shortRtt;
+    private volatile double longRtt;
+
+    public ConcurrencyLimiter(String name, InterceptProperties.Limit config) {
+        this.name = name;
+        this.minLimit = Math.max(1, config.getMinLimit());
+        this.maxLimit = Math.max(minLimit, config.getMaxLimit());
+        this.windowNanos = config.getWindow().toNanos();
+        this.minSamples = config.getMinSamples();
+        this.smoothing = config.getSmoothing();
+        this.tolerance = config.getTolerance();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, config.getInitialLimit()));
+        this.windowEnd = new AtomicLong(nanoTime() + windowNanos);
+        this.rejection = new LimitExceededException(name, Math.max(1, config.getRetryAfter().getSeconds()));
+    }
+
+    public boolean tryAcquire() {
+        int limit = (int) this.limit;
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > maxInFlight.get()) {
+                    maxInFlight.accumulateAndGet(current + 1, Math::max);
+                }
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /* Latency of a completed call, cancelled calls are released without a sample */
+    public void sample(long startNanos) {
+        long now = nanoTime();
+        samples.increment();
+        sampleNanos.add(now - startNanos);
+
+        long end = windowEnd.get();
+        if (now >= end && windowEnd.compareAndSet(end, now + windowNanos)) {
+            update();
+        }
+    }
+
+    public LimiterSnapshot snapshot() {
+        return new LimiterSnapshot(name, (int) limit, inFlight.get(), rejected.sum(),
+                TimeUnit.NANOSECONDS.toMicros(shortRtt), TimeUnit.NANOSECONDS.toMicros((long) longRtt));
+    }
+
+    /* Samples added while the adders are reset may be split between windows, which only skews the mean slightly */
+    private void update() {
+        long count = samples.sumThenReset();
+        long total = sampleNanos.sumThenReset();
+        if (count < minSamples) {
+            /* Too few calls to judge, keep the samples for the next window */
+            samples.add(count);
+            sampleNanos.add(total);
+            return;
+        }
+
+        int peak = maxInFlight.getAndSet(inFlight.get());
+        long rtt = Math.max(1, total / count);
+        double longRtt = this.longRtt == 0 ? rtt : this.longRtt * 0.95 + rtt * 0.05;
+        /* Recover quickly after a long-lasting slowdown, otherwise the slow baseline would hide the next one */
+        if (longRtt > rtt * 2) {
+            longRtt = rtt * 2;
+        }
+
+        double current = this.limit;
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / rtt));
+        double next = current * gradient + Math.sqrt(current);
+        /* Don't grow while the limit is not reached, it would grow without bound under light load */
+        if (peak < current / 2) {
+            next = Math.min(next, current);
+        }
+        next = current * (1 - smoothing) + next * smoothing;
+
+        this.shortRtt = rtt;
+        this.longRtt = longRtt;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
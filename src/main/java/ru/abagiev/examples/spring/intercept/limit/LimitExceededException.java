@@ -0,0 +1,24 @@
+package ru.abagiev.examples.spring.intercept.limit;
+
+import lombok.Getter;
+import ru.abagiev.examples.spring.intercept.model.LibraryException;
+
+/* Call shed by a concurrency limiter, a single instance per limiter is thrown for every rejected call */
+public class LimitExceededException extends LibraryException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    @Getter
+    private final long retryAfterSeconds;
+
+    LimitExceededException(String name, long retryAfterSeconds) {
+        this.name = name;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Concurrency limit of " + name + " is reached";
+    }
+}
@@ -0,0 +1,22 @@
+package ru.abagiev.examples.spring.intercept.limit;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.beans.ConstructorProperties;
+
+@Getter
+@ToString
+@AllArgsConstructor(onConstructor_ = @ConstructorProperties({"name", "limit", "inFlight", "rejected",
+        "rttMicros", "longRttMicros"}))
+public class LimiterSnapshot {
+    /* Endpoint or group */
+    private final String name;
+    private final int limit;
+    private final int inFlight;
+    private final long rejected;
+    /* Mean latency of the last window and the long-term baseline it is compared to */
+    private final long rttMicros;
+    private final long longRttMicros;
+}
@@ -0,0 +1,146 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.abagiev.examples.spring.intercept.config.InterceptProperties;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+@Component
+@ConditionalOnProperty(prefix = "intercept.log", name = "mode", havingValue = "async")
+@Slf4j
+public class AsyncRequestLogger implements RequestLogger {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final RingBuffer<RequestLogEvent> buffer;
+    private final int batchSize;
+    private final OverflowPolicy overflow;
+    private final int sampleEvery;
+    private final int sampleThreshold;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    public AsyncRequestLogger(InterceptProperties properties) {
+        InterceptProperties.Log config = properties.getLog();
+        this.buffer = new RingBuffer<>(roundToPowerOfTwo(config.getBufferSize()));
+        this.batchSize = Math.max(1, config.getBatchSize());
+        this.overflow = config.getOverflow();
+        this.sampleEvery = Math.max(1, config.getSampleEvery());
+        this.sampleThreshold = buffer.capacity() / 4 * 3;
+
+        this.consumer = new Thread(this::consume, "request-log-writer");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /* Successful calls are sampled before their events are created, an event that fails to fit is dropped later */
+    @Override
+    public boolean accepts(Logger logger, Level level, boolean error) {
+        if (!RequestLogEvent.isEnabled(logger, level)) {
+            return false;
+        }
+        if (overflow == OverflowPolicy.SAMPLE && !error && buffer.size() >= sampleThreshold
+                && sampleCounter.getAndIncrement() % sampleEvery != 0) {
+            sampledOut.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /* Event must have been accepted, only the buffer capacity is handled here */
+    @Override
+    public void log(RequestLogEvent event) {
+        switch (overflow) {
+            case BLOCK:
+                while (!buffer.offer(event)) {
+                    if (!running) {
+                        dropped.increment();
+                        return;
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+                break;
+            default:
+                offerOrDrop(event);
+                break;
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    public int getQueueSize() {
+        return buffer.size();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void offerOrDrop(RequestLogEvent event) {
+        if (!buffer.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void consume() {
+        StringBuilder sb = new StringBuilder(256);
+        long reportedDrops = 0;
+
+        while (running || buffer.size() > 0) {
+            /* Write out up to batchSize events, then go to sleep if there is nothing left */
+            int written = 0;
+            RequestLogEvent event;
+            while (written < batchSize && (event = buffer.poll()) != null) {
+                write(event, sb);
+                written++;
+            }
+
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                log.warn("Request log buffer overflow, dropped events: " + (drops - reportedDrops));
+                reportedDrops = drops;
+            }
+
+            if (written == 0 && running) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void write(RequestLogEvent event, StringBuilder sb) {
+        try {
+            sb.setLength(0);
+            event.write(event.format(sb).toString());
+        } catch (RuntimeException e) {
+            log.warn("Failed to write request log event", e);
+        }
+    }
+
+    private static int roundToPowerOfTwo(int size) {
+        int capacity = Integer.highestOneBit(Math.max(2, size));
+        return capacity < size ? capacity << 1 : capacity;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Request logging settings of a single handler method.
+ * Negative values fall back to the intercept.log.* defaults.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LogPolicy {
+
+    /* Share of successful calls to log, from 0 to 1. Failed calls are always logged */
+    double sampleRate() default -1;
+
+    /* Max characters rendered for request body */
+    int maxReqChars() default -1;
+
+    /* Max characters rendered for response */
+    int maxRspChars() default -1;
+
+    /* Log failed calls only */
+    boolean errorsOnly() default false;
+
+    /* Level of successful calls, empty for the default */
+    String level() default "";
+
+    /* Slow call threshold in milliseconds, zero disables */
+    long slowMillis() default -1;
+}
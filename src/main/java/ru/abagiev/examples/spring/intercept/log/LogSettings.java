@@ -0,0 +1,36 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.slf4j.event.Level;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+@Getter
+@ToString
+@RequiredArgsConstructor(staticName = "of")
+public class LogSettings {
+    private final double sampleRate;
+    private final int maxReqChars;
+    private final int maxRspChars;
+    private final boolean errorsOnly;
+    /* Level of successful calls */
+    private final Level level;
+    /* Calls taking at least this long are logged at warn level and kept as slow calls, zero disables */
+    private final long slowMillis;
+
+    public boolean isSlow(long nanos) {
+        return slowMillis > 0 && nanos >= slowMillis * 1_000_000;
+    }
+
+    public boolean shouldLog(boolean error) {
+        if (error) {
+            return true;
+        }
+        if (errorsOnly) {
+            return false;
+        }
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+public enum OverflowPolicy {
+    /* Drop the event when the buffer is full */
+    DROP,
+    /* Keep only every n-th successful call once the buffer is filling up, drop when full */
+    SAMPLE,
+    /* Wait for free space in the buffer, stalling the calling thread */
+    BLOCK
+}
@@ -0,0 +1,171 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import ru.abagiev.examples.spring.intercept.SpringInterceptExampleApp;
+import ru.abagiev.examples.spring.intercept.cache.Encoded;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders payloads in the same format as Lombok toString(), but stops as soon as the character limit is reached,
+ * so a large list response costs no more than the limit to log.
+ */
+public final class PayloadRenderer {
+
+    private static final String APP_PACKAGE = SpringInterceptExampleApp.class.getPackage().getName() + ".";
+    private static final String ELLIPSIS = "...";
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Field f : type.getDeclaredFields()) {
+                int mod = f.getModifiers();
+                if (Modifier.isStatic(mod) || Modifier.isTransient(mod) || f.isSynthetic()) {
+                    continue;
+                }
+                f.setAccessible(true);
+                fields.add(f);
+            }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    private static final ClassValue<String> NAMES = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            String name = type.getName();
+            return name.substring(name.lastIndexOf('.') + 1).replace('$', '.');
+        }
+    };
+
+    private PayloadRenderer() {
+    }
+
+    public static StringBuilder render(StringBuilder sb, Object value, int maxChars) {
+        int limit = sb.length() + Math.max(0, maxChars);
+        if (!append(sb, value, limit)) {
+            sb.setLength(Math.min(sb.length(), limit));
+            sb.append(ELLIPSIS);
+        }
+        return sb;
+    }
+
+    /* Returns false once the limit is exhausted */
+    private static boolean append(StringBuilder sb, Object value, int limit) {
+        if (sb.length() >= limit) {
+            return false;
+        }
+
+        if (value == null) {
+            return appendText(sb, "null", limit);
+        }
+        if (value instanceof CharSequence) {
+            return appendText(sb, (CharSequence) value, limit);
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+            return appendText(sb, value.toString(), limit);
+        }
+        /* Cached response is rendered as the value it encodes */
+        if (value instanceof Encoded) {
+            return append(sb, ((Encoded<?>) value).getValue(), limit);
+        }
+        if (value instanceof byte[]) {
+            return appendText(sb, "byte[" + ((byte[]) value).length + "]", limit);
+        }
+        if (value.getClass().isArray()) {
+            return appendArray(sb, value, limit);
+        }
+        if (value instanceof Collection) {
+            return appendIterable(sb, ((Collection<?>) value).iterator(), limit);
+        }
+        if (value instanceof Map) {
+            return appendMap(sb, (Map<?, ?>) value, limit);
+        }
+        if (value.getClass().getName().startsWith(APP_PACKAGE)) {
+            return appendFields(sb, value, limit);
+        }
+        return appendText(sb, value.toString(), limit);
+    }
+
+    private static boolean appendText(StringBuilder sb, CharSequence text, int limit) {
+        int room = limit - sb.length();
+        if (text.length() <= room) {
+            sb.append(text);
+            return true;
+        }
+        sb.append(text, 0, Math.max(0, room));
+        return false;
+    }
+
+    private static boolean appendArray(StringBuilder sb, Object array, int limit) {
+        sb.append('[');
+        int length = Array.getLength(array);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            if (!append(sb, Array.get(array, i), limit)) {
+                return false;
+            }
+        }
+        return appendText(sb, "]", limit);
+    }
+
+    private static boolean appendIterable(StringBuilder sb, Iterator<?> it, int limit) {
+        sb.append('[');
+        boolean first = true;
+        while (it.hasNext()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            if (!append(sb, it.next(), limit)) {
+                return false;
+            }
+        }
+        return appendText(sb, "]", limit);
+    }
+
+    private static boolean appendMap(StringBuilder sb, Map<?, ?> map, int limit) {
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            if (!append(sb, e.getKey(), limit) || !appendText(sb, "=", limit) || !append(sb, e.getValue(), limit)) {
+                return false;
+            }
+        }
+        return appendText(sb, "}", limit);
+    }
+
+    private static boolean appendFields(StringBuilder sb, Object value, int limit) {
+        sb.append(NAMES.get(value.getClass())).append('(');
+        Field[] fields = FIELDS.get(value.getClass());
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(fields[i].getName()).append('=');
+            Object fieldValue;
+            try {
+                fieldValue = fields[i].get(value);
+            } catch (IllegalAccessException e) {
+                fieldValue = "?";
+            }
+            if (!append(sb, fieldValue, limit)) {
+                return false;
+            }
+        }
+        return appendText(sb, ")", limit);
+    }
+}
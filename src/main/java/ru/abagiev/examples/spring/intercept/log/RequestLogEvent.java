@@ -0,0 +1,146 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import ru.abagiev.examples.spring.intercept.config.MappingDef;
+import ru.abagiev.examples.spring.intercept.trace.RequestTrace;
+
+/**
+ * Immutable request log line. Payloads are rendered within their limits when the event is created, so an event
+ * waiting in the async buffer holds no request or response objects and shows them as they were sent.
+ */
+@Getter
+public class RequestLogEvent {
+    private final Logger logger;
+    private final MappingDef mapping;
+    private final String path;
+    /* Rendered payloads and error message, null if absent */
+    private final String req;
+    private final String reqParams;
+    private final String rsp;
+    private final String error;
+    private final long millis;
+    /* Streaming calls only, -1 otherwise */
+    private final long elements;
+    private final long firstMillis;
+    private final boolean cancelled;
+    /* Error for failed calls, warn for slow ones, the endpoint level otherwise */
+    private final Level level;
+    /* Sampled requests only, null otherwise */
+    private final RequestTrace trace;
+
+    public RequestLogEvent(Logger logger, MappingDef mapping, String path, Object req, String reqParams, Object rsp,
+                           Throwable error, long millis, int maxReqChars, int maxRspChars, long elements,
+                           long firstMillis, boolean cancelled, Level level, RequestTrace trace) {
+        this.logger = logger;
+        this.mapping = mapping;
+        this.path = path;
+        this.req = req != null ? render(req, maxReqChars) : null;
+        this.reqParams = reqParams;
+        this.rsp = rsp != null ? render(rsp, maxRspChars) : null;
+        this.error = error != null ? String.valueOf(error.getMessage()) : null;
+        this.millis = millis;
+        this.elements = elements;
+        this.firstMillis = firstMillis;
+        this.cancelled = cancelled;
+        this.level = level;
+        this.trace = trace;
+    }
+
+    public boolean isError() {
+        return level == Level.ERROR;
+    }
+
+    public boolean isEnabled() {
+        return isEnabled(logger, level);
+    }
+
+    public static boolean isEnabled(Logger logger, Level level) {
+        switch (level) {
+            case ERROR:
+                return logger.isErrorEnabled();
+            case WARN:
+                return logger.isWarnEnabled();
+            case INFO:
+                return logger.isInfoEnabled();
+            case DEBUG:
+                return logger.isDebugEnabled();
+            default:
+                return logger.isTraceEnabled();
+        }
+    }
+
+    public void write(String line) {
+        switch (level) {
+            case ERROR:
+                logger.error(line);
+                break;
+            case WARN:
+                logger.warn(line);
+                break;
+            case INFO:
+                logger.info(line);
+                break;
+            case DEBUG:
+                logger.debug(line);
+                break;
+            default:
+                logger.trace(line);
+                break;
+        }
+    }
+
+    public StringBuilder format(StringBuilder sb) {
+        switch (mapping.getMethod()) {
+            case GET:
+                sb.append("GET ");
+                break;
+            case POST:
+                sb.append("POST ");
+                break;
+            default:
+                sb.append(mapping.getMethod().toString()).append(" ");
+                break;
+        }
+
+        sb.append(path);
+
+        if (req != null) {
+            sb.append(", req=").append(req);
+        }
+
+        sb.append(reqParams);
+
+        if (rsp != null) {
+            sb.append(", rsp=").append(rsp);
+        }
+
+        if (elements >= 0) {
+            sb.append(", elements=").append(elements);
+        }
+
+        if (firstMillis >= 0) {
+            sb.append(", first=").append(firstMillis);
+        }
+
+        if (cancelled) {
+            sb.append(", cancelled");
+        }
+
+        if (error != null) {
+            sb.append(", error=").append(error);
+        }
+
+        sb.append(", time=").append(millis);
+
+        if (trace != null) {
+            trace.format(sb.append(", trace="));
+        }
+        return sb;
+    }
+
+    private static String render(Object value, int maxChars) {
+        return PayloadRenderer.render(new StringBuilder(Math.min(maxChars, 256) + 16), value, maxChars).toString();
+    }
+}
@@ -0,0 +1,14 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+public interface RequestLogger {
+
+    /* Checked before an event is created, so a call that is not going to be written doesn't render its payloads */
+    default boolean accepts(Logger logger, Level level, boolean error) {
+        return RequestLogEvent.isEnabled(logger, level);
+    }
+
+    void log(RequestLogEvent event);
+}
@@ -0,0 +1,77 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer single-consumer queue.
+ * Every slot carries a sequence number telling producers and the consumer whose turn it is.
+ */
+public class RingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+
+    public RingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(E e) {
+        long pos = head.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(index, e);
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                /* Slot still holds an element from the previous lap */
+                return false;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /* Must be called from a single consumer thread only */
+    public E poll() {
+        long pos = tail;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+
+        E e = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.lazySet(index, pos + capacity);
+        tail = pos + 1;
+        return e;
+    }
+
+    public int size() {
+        long size = head.get() - tail;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
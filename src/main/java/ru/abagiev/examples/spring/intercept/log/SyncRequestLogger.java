@@ -0,0 +1,16 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(prefix = "intercept.log", name = "mode", havingValue = "sync", matchIfMissing = true)
+public class SyncRequestLogger implements RequestLogger {
+
+    @Override
+    public void log(RequestLogEvent event) {
+        if (event.isEnabled()) {
+            event.write(event.format(new StringBuilder()).toString());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.abagiev.examples.spring.intercept.metrics;
+
+import lombok.Getter;
+import ru.abagiev.examples.spring.intercept.config.MappingDef;
+import ru.abagiev.examples.spring.intercept.trace.RequestTrace;
+import ru.abagiev.examples.spring.intercept.trace.Stage;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class EndpointMetrics {
+
+    @Getter
+    private final MappingDef mapping;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+
+    /* Streaming endpoints only */
+    private final LatencyHistogram firstElement;
+    private final LongAdder elements = new LongAdder();
+    private final LongAdder cancels = new LongAdder();
+
+    /* Traced calls only, allocated on the first trace */
+    private volatile LatencyHistogram[] stages;
+
+    public EndpointMetrics(MappingDef mapping, boolean streaming) {
+        this.mapping = mapping;
+        this.firstElement = streaming ? new LatencyHistogram() : null;
+    }
+
+    public void enter() {
+        inFlight.increment();
+    }
+
+    public void exit() {
+        inFlight.decrement();
+    }
+
+    public void record(long nanos, boolean error) {
+        latency.record(nanos);
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    public void recordStream(long nanos, long firstNanos, long count, boolean error, boolean cancelled) {
+        record(nanos, error);
+        elements.add(count);
+        if (cancelled) {
+            cancels.increment();
+        }
+        if (firstNanos >= 0 && firstElement != null) {
+            firstElement.record(firstNanos);
+        }
+    }
+
+    public void recordTrace(RequestTrace trace) {
+        LatencyHistogram[] histograms = stages();
+        for (Stage stage : Stage.values()) {
+            long nanos = trace.getDuration(stage);
+            if (nanos >= 0) {
+                histograms[stage.ordinal()].record(nanos);
+            }
+        }
+    }
+
+    public EndpointSnapshot snapshot() {
+        LatencyHistogram.Snapshot s = latency.snapshot();
+        LatencyHistogram.Snapshot first = firstElement != null ? firstElement.snapshot() : null;
+        return new EndpointSnapshot(
+                mapping.getMethod().name(),
+                mapping.getPath(),
+                s.getCount(),
+                errors.sum(),
+                inFlight.sum(),
+                micros(s.getMean()),
+                micros(s.getPercentile(50)),
+                micros(s.getPercentile(99)),
+                micros(s.getPercentile(99.9)),
+                micros(s.getMax()),
+                elements.sum(),
+                cancels.sum(),
+                first != null ? micros(first.getPercentile(50)) : 0,
+                first != null ? micros(first.getPercentile(99)) : 0,
+                stagePercentiles(50),
+                stagePercentiles(99));
+    }
+
+    private LatencyHistogram[] stages() {
+        LatencyHistogram[] histograms = stages;
+        if (histograms == null) {
+            synchronized (this) {
+                histograms = stages;
+                if (histograms == null) {
+                    histograms = new LatencyHistogram[Stage.values().length];
+                    for (int i = 0; i < histograms.length; i++) {
+                        histograms[i] = new LatencyHistogram();
+                    }
+                    stages = histograms;
+                }
+            }
+        }
+        return histograms;
+    }
+
+    /* Stages entered by traced calls, in stage order */
+    private Map<String, Long> stagePercentiles(double percentile) {
+        LatencyHistogram[] histograms = stages;
+        if (histograms == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram.Snapshot s = histograms[stage.ordinal()].snapshot();
+            if (s.getCount() > 0) {
+                result.put(stage.name().toLowerCase(Locale.ROOT), micros(s.getPercentile(percentile)));
+            }
+        }
+        return result;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
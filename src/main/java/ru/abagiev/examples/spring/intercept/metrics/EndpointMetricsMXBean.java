@@ -0,0 +1,8 @@
+package ru.abagiev.examples.spring.intercept.metrics;
+
+import java.util.List;
+
+public interface EndpointMetricsMXBean {
+
+    List<EndpointSnapshot> getEndpoints();
+}
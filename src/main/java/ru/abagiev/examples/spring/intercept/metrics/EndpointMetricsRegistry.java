@@ -0,0 +1,63 @@
+package ru.abagiev.examples.spring.intercept.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.abagiev.examples.spring.intercept.config.MappingDef;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@Slf4j
+public class EndpointMetricsRegistry {
+
+    private static final String OBJECT_NAME = "ru.abagiev.examples.spring.intercept:type=EndpointMetrics";
+
+    private final Map<MappingDef, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    public EndpointMetrics register(MappingDef mapping, boolean streaming) {
+        return endpoints.computeIfAbsent(mapping, key -> new EndpointMetrics(key, streaming));
+    }
+
+    public List<EndpointSnapshot> snapshot() {
+        List<EndpointSnapshot> list = new ArrayList<>(endpoints.size());
+        for (EndpointMetrics m : endpoints.values()) {
+            list.add(m.snapshot());
+        }
+        list.sort((a, b) -> a.getPath().equals(b.getPath())
+                ? a.getMethod().compareTo(b.getMethod())
+                : a.getPath().compareTo(b.getPath()));
+        return list;
+    }
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean((EndpointMetricsMXBean) this::snapshot, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            log.warn("Failed to register endpoint metrics MBean", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.warn("Failed to unregister endpoint metrics MBean", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.abagiev.examples.spring.intercept.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.beans.ConstructorProperties;
+import java.util.Map;
+
+@Getter
+@ToString
+@AllArgsConstructor(onConstructor_ = @ConstructorProperties({"method", "path", "calls", "errors", "inFlight",
+        "meanMicros", "p50Micros", "p99Micros", "p999Micros", "maxMicros", "elements", "cancels", "firstP50Micros", "firstP99Micros",
+        "stageP50Micros", "stageP99Micros"}))
+public class EndpointSnapshot {
+    private final String method;
+    private final String path;
+    private final long calls;
+    private final long errors;
+    private final long inFlight;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+    /* Streaming endpoints: emitted elements, cancelled subscriptions and time to first element */
+    private final long elements;
+    private final long cancels;
+    private final long firstP50Micros;
+    private final long firstP99Micros;
+    /* Traced calls only: stage name to its duration */
+    private final Map<String, Long> stageP50Micros;
+    private final Map<String, Long> stageP99Micros;
+}
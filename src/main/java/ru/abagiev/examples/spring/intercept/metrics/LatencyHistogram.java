@@ -0,0 +1,116 @@
+package ru.abagiev.examples.spring.intercept.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram of nanosecond durations with ~3% precision.
+ * Buckets are striped by thread to keep recording threads off each other's cache lines,
+ * recording itself never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXP = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXP + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXP - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeMask;
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        int stripeCount = Integer.highestOneBit(Math.min(8, Runtime.getRuntime().availableProcessors()));
+        this.stripes = new AtomicLongArray[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicLongArray(BUCKET_COUNT);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        stripes[stripe].incrementAndGet(bucketIndex(value));
+        sum.add(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long c = stripe.get(i);
+                counts[i] += c;
+                total += c;
+            }
+        }
+        return new Snapshot(counts, total, sum.sum(), max.get());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + (int) ((value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        long sub = index % SUB_COUNT;
+        return ((SUB_COUNT + sub + 1) << (exp - SUB_BITS)) - 1;
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
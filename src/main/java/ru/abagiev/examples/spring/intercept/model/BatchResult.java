@@ -0,0 +1,46 @@
+package ru.abagiev.examples.spring.intercept.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+/* Per item outcome of a batch operation, in the order of the request. Counters go first so that a truncated log line still shows them */
+@Getter
+@ToString
+public class BatchResult<T> {
+    private final int succeeded;
+    private final int failed;
+    private final List<Item<T>> items;
+
+    public BatchResult(List<Item<T>> items) {
+        int failed = 0;
+        for (Item<T> item : items) {
+            if (item.getError() != null) {
+                failed++;
+            }
+        }
+        this.succeeded = items.size() - failed;
+        this.failed = failed;
+        this.items = items;
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Item<T> {
+        /* Null for failed items and operations without a result */
+        private final T value;
+        private final String error;
+
+        public static <T> Item<T> ok(T value) {
+            return new Item<>(value, null);
+        }
+
+        public static <T> Item<T> failed(String error) {
+            return new Item<>(null, error);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ru.abagiev.examples.spring.intercept.model;
+
+/**
+ * Expected outcome of an operation reported to the client, not a failure of the service. Thrown on paths probed
+ * by clients at a high rate, so no stack trace is captured and the message is built only when it is read.
+ */
+public abstract class LibraryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    protected LibraryException() {
+        super(null, null, false, false);
+    }
+
+    @Override
+    public abstract String getMessage();
+}
@@ -0,0 +1,27 @@
+package ru.abagiev.examples.spring.intercept.model;
+
+public class NotFoundException extends LibraryException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String entity;
+    private final long id;
+
+    private NotFoundException(String entity, long id) {
+        this.entity = entity;
+        this.id = id;
+    }
+
+    public static NotFoundException book(long id) {
+        return new NotFoundException("Book", id);
+    }
+
+    public static NotFoundException student(long id) {
+        return new NotFoundException("Student", id);
+    }
+
+    @Override
+    public String getMessage() {
+        return entity + " is not found by ID " + id;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import ru.abagiev.examples.spring.intercept.model.NotFoundException;
+
+/* Outcome of a binding operation, existence of the student and the book is checked by the same call */
+public enum BindingStatus {
+    BOUND,
+    UNBOUND,
+    NO_STUDENT,
+    NO_BOOK;
+
+    public boolean isFound() {
+        return this == BOUND || this == UNBOUND;
+    }
+
+    public NotFoundException toException(long studentId, long bookId) {
+        return this == NO_STUDENT ? NotFoundException.student(studentId) : NotFoundException.book(bookId);
+    }
+}
@@ -0,0 +1,291 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import ru.abagiev.examples.spring.intercept.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongFunction;
+
+/**
+ * Inverted index of book title and author tokens. Tokens are lower case runs of letters and digits.
+ * <p>
+ * Postings are kept in a sorted map, so that tokens starting with a prefix are a contiguous sub map. Each posting
+ * list holds book IDs in ascending order, so a query produces its matches in ID order and stops at the limit: it walks
+ * the list of its rarest whole term and looks the ID up in the other ones, or merges the lists of the prefix tokens
+ * if they are smaller. The cost depends on how far the walk goes to find the matches rather than the catalog size.
+ */
+class BookIndex {
+
+    private final ConcurrentNavigableMap<String, PostingList> postings = new ConcurrentSkipListMap<>();
+
+    void add(Book book) {
+        for (String token : tokens(book)) {
+            /* A list is unmapped once it is empty, an add racing with that goes to a new one */
+            while (!postings.computeIfAbsent(token, k -> new PostingList()).add(book.getId())) {
+                Thread.yield();
+            }
+        }
+    }
+
+    void remove(Book book) {
+        for (String token : tokens(book)) {
+            PostingList list = postings.get(token);
+            if (list != null && list.remove(book.getId())) {
+                postings.remove(token, list);
+            }
+        }
+    }
+
+    /**
+     * Books having all query tokens with the lowest IDs, in ID order. The last token of the query matches as a prefix
+     * unless the query ends with a separator. Books removed meanwhile are skipped by the lookup returning null.
+     */
+    List<Book> search(String query, int limit, LongFunction<Book> lookup) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String prefix = Character.isLetterOrDigit(query.charAt(query.length() - 1)) ? terms.remove(terms.size() - 1) : null;
+
+        List<Cursor> whole = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            PostingList list = postings.get(term);
+            if (list == null) {
+                return Collections.emptyList();
+            }
+            whole.add(list.cursor());
+        }
+        whole.sort(Comparator.comparingInt(c -> c.size));
+
+        List<Book> result = new ArrayList<>(Math.min(limit, 64));
+        if (!whole.isEmpty() && (prefix == null || prefixSize(prefix, whole.get(0).size) >= whole.get(0).size)) {
+            Cursor driver = whole.get(0);
+            for (; driver.pos < driver.size && result.size() < limit; driver.pos++) {
+                long id = driver.ids[driver.pos];
+                if (containsAll(whole, 1, id)) {
+                    addIfMatches(result, id, terms, prefix, lookup);
+                }
+            }
+        } else {
+            /* Lists of the prefix tokens merged by their lowest ID, a book having several of the tokens comes once */
+            PriorityQueue<Cursor> heads = new PriorityQueue<>(Comparator.comparingLong(Cursor::current));
+            for (PostingList list : prefixRange(prefix).values()) {
+                Cursor cursor = list.cursor();
+                if (cursor.size > 0) {
+                    heads.add(cursor);
+                }
+            }
+            long last = 0;
+            while (!heads.isEmpty() && result.size() < limit) {
+                Cursor cursor = heads.poll();
+                long id = cursor.current();
+                if (++cursor.pos < cursor.size) {
+                    heads.add(cursor);
+                }
+                if (id != last) {
+                    last = id;
+                    if (containsAll(whole, 0, id)) {
+                        addIfMatches(result, id, terms, prefix, lookup);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /* Indexed tokens starting with the prefix, in alphabetical order */
+    List<String> suggest(String prefix, int limit) {
+        String normalized = prefix.toLowerCase(Locale.ROOT).trim();
+        List<String> tokens = new ArrayList<>(Math.min(limit, 64));
+        if (normalized.isEmpty()) {
+            return tokens;
+        }
+        for (String token : prefixRange(normalized).keySet()) {
+            if (tokens.size() >= limit) {
+                break;
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /* IDs come in ascending order, so the cursors only move forward */
+    private static boolean containsAll(List<Cursor> cursors, int from, long id) {
+        for (int i = from; i < cursors.size(); i++) {
+            if (!cursors.get(i).skipTo(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Postings may be behind a book changed meanwhile, so the book itself is checked */
+    private static void addIfMatches(List<Book> result, long id, List<String> terms, String prefix,
+                                     LongFunction<Book> lookup) {
+        Book book = lookup.apply(id);
+        if (book != null && matches(book, terms, prefix)) {
+            result.add(book);
+        }
+    }
+
+    private static boolean matches(Book book, List<String> terms, String prefix) {
+        Set<String> tokens = tokens(book);
+        if (!tokens.containsAll(terms)) {
+            return false;
+        }
+        if (prefix == null) {
+            return true;
+        }
+        for (String token : tokens) {
+            if (token.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Total size of the prefix posting lists, counted up to the bound only */
+    private long prefixSize(String prefix, long bound) {
+        long size = 0;
+        for (PostingList list : prefixRange(prefix).values()) {
+            size += list.cursor().size;
+            if (size >= bound) {
+                break;
+            }
+        }
+        return size;
+    }
+
+    private Map<String, PostingList> prefixRange(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static Set<String> tokens(Book book) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (book.getTitle() != null) {
+            tokens.addAll(tokenize(book.getTitle()));
+        }
+        if (book.getAuthor() != null) {
+            tokens.addAll(tokenize(book.getAuthor()));
+        }
+        return tokens;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /*
+     * IDs of the books having a token, ascending. Readers take the current array and size without locking. Writers
+     * are serialized; an ID above the last one is appended past the size readers may have seen, anything else
+     * publishes a copy. Books get increasing IDs, so adds are appends and only removals copy the list.
+     */
+    private static final class PostingList {
+        private static final long[] NONE = new long[0];
+
+        private volatile Cursor current = new Cursor(NONE, 0);
+        /* Set once the list is empty and about to be unmapped */
+        private boolean detached;
+
+        Cursor cursor() {
+            Cursor c = current;
+            return new Cursor(c.ids, c.size);
+        }
+
+        /* Returns false if the list is no longer in the index */
+        synchronized boolean add(long id) {
+            if (detached) {
+                return false;
+            }
+            long[] ids = current.ids;
+            int size = current.size;
+            if (size == 0 || ids[size - 1] < id) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+                }
+                ids[size] = id;
+                current = new Cursor(ids, size + 1);
+                return true;
+            }
+
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0) {
+                i = -i - 1;
+                long[] copy = new long[size + 1 + (size >> 1)];
+                System.arraycopy(ids, 0, copy, 0, i);
+                copy[i] = id;
+                System.arraycopy(ids, i, copy, i + 1, size - i);
+                current = new Cursor(copy, size + 1);
+            }
+            return true;
+        }
+
+        /* Returns true if the list became empty, it is detached then */
+        synchronized boolean remove(long id) {
+            long[] ids = current.ids;
+            int size = current.size;
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) {
+                long[] copy = new long[size - 1];
+                System.arraycopy(ids, 0, copy, 0, i);
+                System.arraycopy(ids, i + 1, copy, i, size - i - 1);
+                current = new Cursor(copy, size - 1);
+                size--;
+            }
+            if (size == 0) {
+                detached = true;
+            }
+            return detached;
+        }
+    }
+
+    /* Read position in the IDs of a posting list as they were when it was taken, moving forward only */
+    private static final class Cursor {
+        private final long[] ids;
+        private final int size;
+        private int pos;
+
+        Cursor(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        long current() {
+            return ids[pos];
+        }
+
+        /* Moves to the first ID not below the given one, galloping from the current position */
+        boolean skipTo(long id) {
+            int low = pos;
+            int step = 1;
+            while (low + step < size && ids[low + step] < id) {
+                low += step;
+                step <<= 1;
+            }
+            int i = Arrays.binarySearch(ids, low, Math.min(low + step + 1, size), id);
+            pos = i >= 0 ? i : -i - 1;
+            return i >= 0;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Concurrent set of primitive longs on open-addressing tables with linear probing.
+ * Keys are spread over segments; writers take the segment write lock, readers probe optimistically
+ * and fall back to the read lock only when a write interleaves. Nothing is allocated per key.
+ * Values 0 and Long.MIN_VALUE are reserved and cannot be stored.
+ */
+public class ConcurrentLongSet {
+
+    private static final long FREE = 0;
+    private static final long REMOVED = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    public ConcurrentLongSet() {
+        this(64, 16);
+    }
+
+    public ConcurrentLongSet(int segmentCount, int segmentCapacity) {
+        int count = powerOfTwo(segmentCount);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(powerOfTwo(Math.max(4, segmentCapacity)));
+        }
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+    }
+
+    public boolean add(long key) {
+        checkKey(key);
+        long hash = hash(key);
+        return segmentFor(hash).add(key, (int) hash);
+    }
+
+    public boolean remove(long key) {
+        checkKey(key);
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, (int) hash);
+    }
+
+    public boolean contains(long key) {
+        if (key == FREE || key == REMOVED) {
+            return false;
+        }
+        long hash = hash(key);
+        return segmentFor(hash).contains(key, (int) hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment s : segments) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Segment s : segments) {
+            if (s.size > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Weakly consistent: each segment is visited under its read lock */
+    public void forEach(LongConsumer action) {
+        for (Segment s : segments) {
+            s.forEach(action);
+        }
+    }
+
+    /* Same as forEach(), stops once the action returns false; returns false if stopped */
+    public boolean forEachWhile(LongPredicate action) {
+        for (Segment s : segments) {
+            if (!s.forEachWhile(action)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    private static void checkKey(long key) {
+        if (key == FREE || key == REMOVED) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+    }
+
+    private static long hash(long key) {
+        /* MurmurHash3 finalizer */
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int powerOfTwo(int value) {
+        int p = Integer.highestOneBit(Math.max(1, value));
+        return p < value ? p << 1 : p;
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private long[] table;
+        private volatile int size;
+        private int removed;
+
+        private Segment(int capacity) {
+            this.table = new long[capacity];
+        }
+
+        private boolean contains(long key, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                boolean found = indexOf(table, key, hash) >= 0;
+                if (lock.validate(stamp)) {
+                    return found;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                return indexOf(table, key, hash) >= 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private boolean add(long key, int hash) {
+            long stamp = lock.writeLock();
+            try {
+                long[] t = table;
+                int mask = t.length - 1;
+                int free = -1;
+                for (int i = hash & mask, n = 0; n < t.length; i = (i + 1) & mask, n++) {
+                    long k = t[i];
+                    if (k == key) {
+                        return false;
+                    }
+                    if (k == REMOVED) {
+                        if (free < 0) {
+                            free = i;
+                        }
+                    } else if (k == FREE) {
+                        if (free < 0) {
+                            free = i;
+                        }
+                        break;
+                    }
+                }
+
+                if (t[free] == REMOVED) {
+                    removed--;
+                }
+                t[free] = key;
+                size++;
+
+                if (size + removed > t.length * LOAD_FACTOR) {
+                    rehash();
+                }
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private boolean remove(long key, int hash) {
+            long stamp = lock.writeLock();
+            try {
+                int index = indexOf(table, key, hash);
+                if (index < 0) {
+                    return false;
+                }
+                table[index] = REMOVED;
+                size--;
+                removed++;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void forEach(LongConsumer action) {
+            long stamp = lock.readLock();
+            try {
+                for (long k : table) {
+                    if (k != FREE && k != REMOVED) {
+                        action.accept(k);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private boolean forEachWhile(LongPredicate action) {
+            long stamp = lock.readLock();
+            try {
+                for (long k : table) {
+                    if (k != FREE && k != REMOVED && !action.test(k)) {
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /* Probe is bounded by table length, so it terminates even on a table being modified */
+        private static int indexOf(long[] t, long key, int hash) {
+            int mask = t.length - 1;
+            for (int i = hash & mask, n = 0; n < t.length; i = (i + 1) & mask, n++) {
+                long k = t[i];
+                if (k == key) {
+                    return i;
+                }
+                if (k == FREE) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /* Grows the table when it is half full of live keys, otherwise just drops tombstones */
+        private void rehash() {
+            long[] old = table;
+            int capacity = size >= old.length / 2 ? old.length << 1 : old.length;
+            long[] t = new long[capacity];
+            int mask = capacity - 1;
+            for (long k : old) {
+                if (k != FREE && k != REMOVED) {
+                    int i = (int) hash(k) & mask;
+                    while (t[i] != FREE) {
+                        i = (i + 1) & mask;
+                    }
+                    t[i] = k;
+                }
+            }
+            table = t;
+            removed = 0;
+        }
+    }
+}
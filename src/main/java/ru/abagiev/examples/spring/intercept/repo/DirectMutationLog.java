@@ -0,0 +1,20 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/* Mutations stay in memory only */
+@Component
+@ConditionalOnProperty(prefix = "library.persistence.journal", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class DirectMutationLog implements MutationLog {
+
+    @Override
+    public <T> Mono<T> applyAll(Callable<T> mutation, Function<? super T, List<JournalRecord>> records) {
+        return Mono.fromCallable(mutation);
+    }
+}
@@ -0,0 +1,507 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import ru.abagiev.examples.spring.intercept.config.LibraryProperties;
+import ru.abagiev.examples.spring.intercept.trace.RequestTrace;
+import ru.abagiev.examples.spring.intercept.trace.Stage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of repository mutations with group commit.
+ * <p>
+ * Mutations are applied and enqueued under one lock, so the journal order is the order in which they became
+ * visible. A single writer thread drains the queue in batches, writes a batch with one gather write and one
+ * {@code force()}, and only then completes the callers. Frame: int payload length, int CRC32 of payload, payload.
+ * <p>
+ * The journal is a sequence of segment files: the configured path, then the path with a ".1", ".2"... suffix. On
+ * start the segments are replayed in order on top of the snapshot, streamed through a bounded buffer; a torn tail
+ * left by a crash is cut off. When the current segment grows over the compaction size, the writer starts a new one
+ * and a snapshot is saved in the background, the older segments are deleted once it is durable.
+ * <p>
+ * A failed write stops the journal: the batch is cut off the file, its callers and everything queued after it get
+ * the error, and later mutations are rejected before they are applied. Appending past a torn frame would acknowledge
+ * records that replay never reaches. Mutations of the failed batch stay visible in memory until restart.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.persistence.journal", name = "enabled", havingValue = "true")
+@Slf4j
+public class Journal implements MutationLog {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    /* Whole segment is replayed on start before the service is up, compaction is what bounds that */
+    private static final long MAX_COMPACT_SIZE = 1L << 30;
+
+    private final LibraryRepository repo;
+    private final ObjectProvider<SnapshotPersistence> snapshots;
+    private final Path path;
+    private final Path dir;
+    private final Path snapshotPath;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long compactSize;
+
+    /* Guards mutation + enqueue, held by the writer while it starts a new segment */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final CRC32 crc = new CRC32();
+
+    /* Current segment, only the writer thread touches it once the journal is open */
+    private FileChannel channel;
+    private long segment;
+    private Thread writer;
+    private ExecutorService compactor;
+    /* Set by the writer when it starts a new segment, cleared once the snapshot is saved and older segments deleted */
+    private volatile boolean compacting;
+    private volatile boolean running;
+    /* First write failure, the journal accepts nothing after it */
+    private volatile Throwable failure;
+
+    public Journal(LibraryRepository repo, ObjectProvider<SnapshotPersistence> snapshots, LibraryProperties properties) {
+        LibraryProperties.Journal settings = properties.getPersistence().getJournal();
+        this.repo = repo;
+        this.snapshots = snapshots;
+        this.path = Paths.get(settings.getPath()).toAbsolutePath();
+        this.dir = path.getParent();
+        this.snapshotPath = Paths.get(properties.getPersistence().getSnapshotPath());
+        this.batchSize = settings.getBatchSize();
+        this.maxDelayNanos = settings.getMaxDelay().toNanos();
+        this.compactSize = settings.getCompactSize();
+        if (compactSize > MAX_COMPACT_SIZE) {
+            throw new IllegalArgumentException("Journal compaction size is over " + MAX_COMPACT_SIZE + ": " + compactSize);
+        }
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        /* Snapshot first: snapshot persistence loads it itself, otherwise the one left by compaction is read here */
+        if (snapshots.getIfAvailable() == null && Files.exists(snapshotPath)) {
+            SnapshotFile.Stats stats = SnapshotFile.read(snapshotPath, repo);
+            log.info("Loaded snapshot " + snapshotPath + ": " + stats);
+        }
+
+        Files.createDirectories(dir);
+        List<Long> segments = segments();
+        for (long n : segments) {
+            segment = n;
+            channel = FileChannel.open(segmentPath(n), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replay(segmentPath(n));
+            if (n != segments.get(segments.size() - 1)) {
+                channel.close();
+            }
+        }
+        /* Writing goes on at the end of the last segment */
+        if (segments.isEmpty()) {
+            segment = 0;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "library-journal-compact");
+            t.setDaemon(true);
+            return t;
+        });
+        running = true;
+        writer = new Thread(this::writeLoop, "library-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException, IOException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.MINUTES.toMillis(1));
+        compactor.shutdown();
+        compactor.awaitTermination(1, TimeUnit.MINUTES);
+        channel.close();
+    }
+
+    @Override
+    public <T> Mono<T> applyAll(Callable<T> mutation, Function<? super T, List<JournalRecord>> records) {
+        return Mono.<T>create(sink -> {
+            lock.lock();
+            try {
+                if (failure != null) {
+                    sink.error(stopped());
+                    return;
+                }
+                T result = mutation.call();
+                List<JournalRecord> list = records.apply(result);
+                if (list.isEmpty()) {
+                    sink.success(result);
+                    return;
+                }
+                /* Records of a batch may be split between commits, the caller completes once all of them are written */
+                Completion completion = new Completion(sink, result, RequestTrace.of(sink.currentContext()), list.size());
+                for (JournalRecord record : list) {
+                    queue.add(new Entry(record.encode(), completion));
+                }
+            } catch (Throwable e) {
+                sink.error(e);
+                return;
+            } finally {
+                lock.unlock();
+            }
+            LockSupport.unpark(writer);
+        }).publishOn(Schedulers.parallel()); /* Don't run the rest of the request on the writer thread */
+    }
+
+    /* Applies the frames of the segment open in the channel, leaves it positioned after the last valid one */
+    private void replay(Path file) throws IOException {
+        long size = channel.size();
+        long start = System.nanoTime();
+        ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        buf.flip();
+        int count = 0;
+        long position = 0;
+        while (fill(buf, HEADER_SIZE)) {
+            int length = buf.getInt(buf.position());
+            int checksum = buf.getInt(buf.position() + 4);
+            if (length <= 0 || length > size - position - HEADER_SIZE) {
+                break;
+            }
+            if (buf.capacity() < HEADER_SIZE + length) {
+                buf = ByteBuffer.allocate(HEADER_SIZE + length).put(buf);
+                buf.flip();
+            }
+            if (!fill(buf, HEADER_SIZE + length)) {
+                break;
+            }
+            buf.position(buf.position() + HEADER_SIZE);
+            ByteBuffer payload = buf.slice();
+            payload.limit(length);
+            if (checksum(payload) != checksum) {
+                break;
+            }
+            try {
+                JournalRecord.decode(payload).applyTo(repo);
+            } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+                break;
+            }
+            buf.position(buf.position() + length);
+            position += HEADER_SIZE + length;
+            count++;
+        }
+
+        if (position < size) {
+            log.warn("Journal " + file + " has a broken tail at " + position + " of " + size + ", truncating");
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        log.info("Replayed journal " + file + ": records=" + count + ", time=" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /* Reads on until the buffer holds at least the given number of bytes, false if the segment ends before that */
+    private boolean fill(ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() >= bytes) {
+            return true;
+        }
+        buf.compact();
+        try {
+            while (buf.position() < bytes) {
+                if (channel.read(buf) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            buf.flip();
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            Entry first = queue.poll();
+            if (first == null) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+                continue;
+            }
+
+            batch.add(first);
+            fillBatch(batch);
+            commit(batch);
+
+            if (compactSize > 0 && !compacting && position() > compactSize) {
+                rotate(batch);
+            }
+        }
+    }
+
+    /* Takes what is already queued, waits for more up to max delay only if the batch is not full yet */
+    private void fillBatch(List<Entry> batch) {
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < batchSize) {
+            Entry entry = queue.poll();
+            if (entry != null) {
+                batch.add(entry);
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void commit(List<Entry> batch) {
+        if (failure != null) {
+            Throwable error = stopped();
+            for (Entry entry : batch) {
+                entry.complete(error);
+            }
+            batch.clear();
+            return;
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[batch.size() * 2];
+        for (int i = 0; i < batch.size(); i++) {
+            ByteBuffer payload = batch.get(i).payload;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(payload.remaining()).putInt(checksum(payload)).flip();
+            buffers[i * 2] = header;
+            buffers[i * 2 + 1] = payload;
+        }
+
+        Throwable error = null;
+        long start = -1;
+        try {
+            start = channel.position();
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to write journal " + path + ", stopping it", e);
+            error = e;
+            failure = e;
+            cutOff(start);
+        }
+
+        for (Entry entry : batch) {
+            entry.complete(error);
+        }
+        batch.clear();
+    }
+
+    /* Leaves the file as it was before the failed batch, if even that fails replay stops at the torn frame */
+    private void cutOff(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            channel.truncate(position);
+            channel.position(position);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to cut the failed batch off journal " + path, e);
+        }
+    }
+
+    private IllegalStateException stopped() {
+        return new IllegalStateException("Journal " + path + " is stopped after a write failure", failure);
+    }
+
+    /*
+     * Mutations are blocked only while the queue is drained and the next segment is opened, so the older segments
+     * hold everything applied before it. The snapshot is then saved without blocking anything, it may or may not see
+     * mutations that followed; replaying the new segment on top of it is the same since records are idempotent.
+     */
+    private void rotate(List<Entry> batch) {
+        lock.lock();
+        try {
+            Entry entry;
+            while ((entry = queue.poll()) != null) {
+                batch.add(entry);
+                if (batch.size() >= batchSize) {
+                    commit(batch);
+                }
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+            }
+            if (failure != null) {
+                return;
+            }
+
+            FileChannel next;
+            try {
+                next = FileChannel.open(segmentPath(segment + 1), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                SnapshotFile.syncDirectory(dir);
+            } catch (IOException | RuntimeException e) {
+                /* Writing goes on to the current segment, compaction is retried after the next batch */
+                log.error("Failed to start a new segment of journal " + path, e);
+                return;
+            }
+            closeQuietly(channel);
+            channel = next;
+            segment++;
+            compacting = true;
+        } finally {
+            lock.unlock();
+        }
+
+        long current = segment;
+        compactor.execute(() -> compact(current));
+    }
+
+    /* Older segments are kept if the snapshot fails, they are replayed on top of the previous one */
+    private void compact(long current) {
+        long start = System.nanoTime();
+        try {
+            SnapshotPersistence persistence = snapshots.getIfAvailable();
+            if (persistence != null) {
+                persistence.save();
+            } else {
+                SnapshotFile.write(repo, snapshotPath);
+            }
+
+            int deleted = 0;
+            for (long n : segments()) {
+                if (n < current) {
+                    Files.delete(segmentPath(n));
+                    deleted++;
+                }
+            }
+            SnapshotFile.syncDirectory(dir);
+            log.info("Compacted journal " + path + ": segments=" + deleted + ", time=" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to compact journal " + path, e);
+        } finally {
+            compacting = false;
+        }
+    }
+
+    /* Numbers of the segment files present, ascending; the configured path itself is segment 0 */
+    private List<Long> segments() throws IOException {
+        String name = path.getFileName().toString();
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, name + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(name.length());
+                if (suffix.isEmpty()) {
+                    segments.add(0L);
+                } else if (suffix.matches("\\.[0-9]{1,18}")) {
+                    segments.add(Long.parseLong(suffix.substring(1)));
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(long n) {
+        return n == 0 ? path : path.resolveSibling(path.getFileName() + "." + n);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close journal segment", e);
+        }
+    }
+
+    private long position() {
+        try {
+            return channel.position();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /* Only the writer thread and replay before it starts compute checksums */
+    private int checksum(ByteBuffer payload) {
+        crc.reset();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static class Entry {
+        private final ByteBuffer payload;
+        private final Completion completion;
+
+        Entry(ByteBuffer payload, Completion completion) {
+            this.payload = payload;
+            this.completion = completion;
+        }
+
+        void complete(Throwable error) {
+            completion.complete(error);
+        }
+    }
+
+    /* Caller of a mutation, shared by its records and only touched by the writer thread once they are queued */
+    private static class Completion {
+        private final MonoSink<Object> sink;
+        private final Object result;
+        /* Time in the journal is a stage of traced requests */
+        private final RequestTrace trace;
+        private final long queued;
+        private int pending;
+        private Throwable error;
+
+        @SuppressWarnings("unchecked")
+        Completion(MonoSink<?> sink, Object result, RequestTrace trace, int pending) {
+            this.sink = (MonoSink<Object>) sink;
+            this.result = result;
+            this.trace = trace;
+            this.queued = trace != null ? System.nanoTime() : 0;
+            this.pending = pending;
+        }
+
+        /* Fails if any record failed, the first error is reported */
+        void complete(Throwable error) {
+            if (error != null && this.error == null) {
+                this.error = error;
+            }
+            if (--pending > 0) {
+                return;
+            }
+            if (trace != null) {
+                trace.record(Stage.JOURNAL, queued);
+            }
+            if (this.error != null) {
+                sink.error(this.error);
+            } else {
+                sink.success(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import ru.abagiev.examples.spring.intercept.model.Book;
+import ru.abagiev.examples.spring.intercept.model.Student;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/* Single repository mutation as written to the journal. Replaying a record twice has no extra effect */
+@Getter
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class JournalRecord {
+
+    public enum Type {
+        ADD_BOOK,
+        REMOVE_BOOK,
+        ADD_STUDENT,
+        REMOVE_STUDENT,
+        BIND,
+        UNBIND
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final Type type;
+    /* Entity ID or packed binding key */
+    private final long id;
+    private final String first;
+    private final String second;
+
+    public static JournalRecord addBook(Book book) {
+        return new JournalRecord(Type.ADD_BOOK, book.getId(), book.getTitle(), book.getAuthor());
+    }
+
+    public static JournalRecord removeBook(long id) {
+        return new JournalRecord(Type.REMOVE_BOOK, id, null, null);
+    }
+
+    public static JournalRecord addStudent(Student student) {
+        return new JournalRecord(Type.ADD_STUDENT, student.getId(), student.getLastName(), student.getFirstName());
+    }
+
+    public static JournalRecord removeStudent(long id) {
+        return new JournalRecord(Type.REMOVE_STUDENT, id, null, null);
+    }
+
+    public static JournalRecord bind(long studentId, long bookId) {
+        return new JournalRecord(Type.BIND, LibraryRepository.bindingKey(studentId, bookId), null, null);
+    }
+
+    public static JournalRecord unbind(long studentId, long bookId) {
+        return new JournalRecord(Type.UNBIND, LibraryRepository.bindingKey(studentId, bookId), null, null);
+    }
+
+    void applyTo(LibraryRepository repo) {
+        switch (type) {
+            case ADD_BOOK:
+                Book book = new Book();
+                book.setId(id);
+                book.setTitle(first);
+                book.setAuthor(second);
+                repo.putBook(book);
+                break;
+            case REMOVE_BOOK:
+                repo.removeBook(id);
+                break;
+            case ADD_STUDENT:
+                Student student = new Student();
+                student.setId(id);
+                student.setLastName(first);
+                student.setFirstName(second);
+                repo.putStudent(student);
+                break;
+            case REMOVE_STUDENT:
+                repo.removeStudent(id);
+                break;
+            case BIND:
+                repo.putBindingKey(id);
+                break;
+            case UNBIND:
+                repo.unbind(id >>> 32, id & 0xFFFFFFFFL);
+                break;
+        }
+    }
+
+    /* Payload: type byte, id, then both strings as int length and UTF-8 bytes, -1 for null */
+    ByteBuffer encode() {
+        byte[] a = first == null ? null : first.getBytes(StandardCharsets.UTF_8);
+        byte[] b = second == null ? null : second.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(1 + 8 + 4 + length(a) + 4 + length(b));
+        buf.put((byte) type.ordinal()).putLong(id);
+        putString(buf, a);
+        putString(buf, b);
+        buf.flip();
+        return buf;
+    }
+
+    static JournalRecord decode(ByteBuffer buf) {
+        Type type = TYPES[buf.get()];
+        long id = buf.getLong();
+        return new JournalRecord(type, id, getString(buf), getString(buf));
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        if (bytes == null) {
+            buf.putInt(-1);
+        } else {
+            buf.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -7,22 +7,50 @@ import ru.abagiev.examples.spring.intercept.model.Book;
 import ru.abagiev.examples.spring.intercept.model.Student;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.function.LongConsumer;
 
 @Repository
 public class LibraryRepository {
-    private Map<Long, Book> bookMap = new ConcurrentHashMap<>();
+    private static final long NO_KEY = 0;
+    private static final long MAX_BINDING_ID = 0xFFFFFFFFL;
+
+    private final long epoch = System.currentTimeMillis();
+
+    /* Ordered by ID, so that lists can be paged and streamed without copying */
+    private ConcurrentNavigableMap<Long, Book> bookMap = new ConcurrentSkipListMap<>();
     private AtomicLong bookSequence = new AtomicLong(0);
+    /* Incremented after every change of bookMap, snapshot is rebuilt on the first read of a new version */
+    private AtomicLong bookVersion = new AtomicLong(0);
+    private volatile Snapshot<Book> bookSnapshot;
 
-    private Map<Long, Student> studentMap = new ConcurrentHashMap<>();
+    private ConcurrentNavigableMap<Long, Student> studentMap = new ConcurrentSkipListMap<>();
     private AtomicLong studentSequence = new AtomicLong(0);
+    private AtomicLong studentVersion = new AtomicLong(0);
+    private volatile Snapshot<Student> studentSnapshot;
+
+    /* Bindings packed into a single long, see bindingKey() */
+    private ConcurrentLongSet bindingSet = new ConcurrentLongSet();
+    /* Adjacency indexes of bindingSet, updated only inside compute() so that sets are never lost */
+    private Map<Long, ConcurrentLongSet> studentBooks = new ConcurrentHashMap<>();
+    private Map<Long, ConcurrentLongSet> bookStudents = new ConcurrentHashMap<>();
 
-    private Set<Binding> bindingSet = ConcurrentHashMap.newKeySet();
+    /* Title and author tokens, updated together with bookMap */
+    private final BookIndex bookIndex = new BookIndex();
+
+    private final List<RepositoryListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(RepositoryListener listener) {
+        listeners.add(listener);
+    }
 
     public Book addBook(String title, String author) {
         Book book = new Book();
@@ -31,19 +59,80 @@ public class LibraryRepository {
         book.setId(bookSequence.incrementAndGet());
 
         bookMap.put(book.getId(), book);
+        bookIndex.add(book);
+        bookVersion.incrementAndGet();
+        fireBookChanged(book.getId());
         return book;
     }
 
+    /* IDs of the whole batch are reserved at once, readers see a single version change */
+    public List<Book> addBooks(List<Book> books) {
+        long id = bookSequence.getAndAdd(books.size());
+        for (Book book : books) {
+            book.setId(++id);
+            bookMap.put(id, book);
+            bookIndex.add(book);
+        }
+        bookVersion.incrementAndGet();
+        for (Book book : books) {
+            fireBookChanged(book.getId());
+        }
+        return books;
+    }
+
     public List<Book> getAllBooks() {
-        return new ArrayList<>(bookMap.values());
+        return getBookSnapshot().getItems();
+    }
+
+    public Snapshot<Book> getBookSnapshot() {
+        Snapshot<Book> snapshot = bookSnapshot;
+        long version = bookVersion.get();
+        if (snapshot == null || snapshot.getVersion() != version) {
+            snapshot = new Snapshot<>(epoch, version, Collections.unmodifiableList(new ArrayList<>(bookMap.values())));
+            bookSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    public Collection<Book> getBookValues() {
+        return bookMap.values();
+    }
+
+    public List<Book> getBooks(long afterId, int limit) {
+        return page(bookMap, afterId, limit);
     }
 
     public Book getBook(long bookId) {
         return bookMap.get(bookId);
     }
 
-    public void removeBook(long bookId) {
-        bookMap.remove(bookId);
+    /* False if there was no such book */
+    public boolean removeBook(long bookId) {
+        Book removed = bookMap.remove(bookId);
+        if (removed != null) {
+            bookIndex.remove(removed);
+            bookVersion.incrementAndGet();
+            fireBookChanged(bookId);
+        }
+
+        /* Cascade after removal, so that concurrent bind either sees the book missing or is visible here */
+        ConcurrentLongSet students = bookStudents.remove(bookId);
+        if (students != null) {
+            students.forEach(studentId -> {
+                bindingSet.remove(bindingKey(studentId, bookId));
+                removeAdjacent(studentBooks, studentId, bookId);
+                fireBindingChanged(studentId, bookId);
+            });
+        }
+        return removed != null;
+    }
+
+    public List<Book> searchBooks(String query, int limit) {
+        return bookIndex.search(query, limit, bookMap::get);
+    }
+
+    public List<String> suggestBookTokens(String prefix, int limit) {
+        return bookIndex.suggest(prefix, limit);
     }
 
     public Student addStudent(String firstName, String lastName) {
@@ -53,50 +142,334 @@ public class LibraryRepository {
         student.setId(studentSequence.incrementAndGet());
 
         studentMap.put(student.getId(), student);
+        studentVersion.incrementAndGet();
+        fireStudentChanged(student.getId());
         return student;
     }
 
+    public List<Student> addStudents(List<Student> students) {
+        long id = studentSequence.getAndAdd(students.size());
+        for (Student student : students) {
+            student.setId(++id);
+            studentMap.put(id, student);
+        }
+        studentVersion.incrementAndGet();
+        for (Student student : students) {
+            fireStudentChanged(student.getId());
+        }
+        return students;
+    }
+
     public List<Student> getAllStudents() {
-        return new ArrayList<>(studentMap.values());
+        return getStudentSnapshot().getItems();
+    }
+
+    public Snapshot<Student> getStudentSnapshot() {
+        Snapshot<Student> snapshot = studentSnapshot;
+        long version = studentVersion.get();
+        if (snapshot == null || snapshot.getVersion() != version) {
+            snapshot = new Snapshot<>(epoch, version, Collections.unmodifiableList(new ArrayList<>(studentMap.values())));
+            studentSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    public Collection<Student> getStudentValues() {
+        return studentMap.values();
+    }
+
+    public List<Student> getStudents(long afterId, int limit) {
+        return page(studentMap, afterId, limit);
     }
 
     public Student getStudent(long studentId) {
         return studentMap.get(studentId);
     }
 
-    public void removeStudent(long studentId) {
-        studentMap.remove(studentId);
+    public boolean removeStudent(long studentId) {
+        boolean removed = studentMap.remove(studentId) != null;
+        if (removed) {
+            studentVersion.incrementAndGet();
+            fireStudentChanged(studentId);
+        }
+
+        ConcurrentLongSet books = studentBooks.remove(studentId);
+        if (books != null) {
+            books.forEach(bookId -> {
+                bindingSet.remove(bindingKey(studentId, bookId));
+                removeAdjacent(bookStudents, bookId, studentId);
+                fireBindingChanged(studentId, bookId);
+            });
+        }
+        return removed;
     }
 
-    public void bind(long studentId, long bookId) {
-        Binding binding = new Binding();
-        binding.setStudentId(studentId);
-        binding.setBookId(bookId);
+    /* BOUND, or which of the two is missing */
+    public BindingStatus bind(long studentId, long bookId) {
+        BindingStatus status = checkBinding(studentId, bookId);
+        if (status != null) {
+            return status;
+        }
+
+        long key = bindingKey(studentId, bookId);
+        if (key == NO_KEY) {
+            throw new IllegalArgumentException("Binding IDs are out of range: " + studentId + ", " + bookId);
+        }
+        if (!bindingSet.add(key)) {
+            return BindingStatus.BOUND;
+        }
+        addAdjacent(studentBooks, studentId, bookId);
+        addAdjacent(bookStudents, bookId, studentId);
+        fireBindingChanged(studentId, bookId);
 
-        bindingSet.add(binding);
+        /* Student or book removed meanwhile, don't leave an orphan binding */
+        status = checkBinding(studentId, bookId);
+        if (status != null) {
+            removeBinding(studentId, bookId);
+            return status;
+        }
+        return BindingStatus.BOUND;
     }
 
-    public void unbind(long studentId, long bookId) {
-        Binding binding = new Binding();
-        binding.setStudentId(studentId);
-        binding.setBookId(bookId);
+    /* UNBOUND, or which of the two is missing */
+    public BindingStatus unbind(long studentId, long bookId) {
+        BindingStatus status = checkBinding(studentId, bookId);
+        if (status != null) {
+            return status;
+        }
+        removeBinding(studentId, bookId);
+        return BindingStatus.UNBOUND;
+    }
 
-        bindingSet.remove(binding);
+    /*
+     * Same as bind() for a whole batch, statuses are in batch order. Every item is validated and applied in one pass,
+     * existence of a student or book repeated by consecutive items is looked up once.
+     */
+    public BindingStatus[] bindAll(List<Binding> bindings) {
+        BindingStatus[] statuses = new BindingStatus[bindings.size()];
+        boolean[] added = new boolean[bindings.size()];
+        ExistenceCheck check = new ExistenceCheck();
+        for (int i = 0; i < statuses.length; i++) {
+            Binding binding = bindings.get(i);
+            long studentId = binding.getStudentId();
+            long bookId = binding.getBookId();
+            BindingStatus status = check.of(studentId, bookId);
+            if (status == null) {
+                long key = bindingKey(studentId, bookId);
+                if (key == NO_KEY) {
+                    throw new IllegalArgumentException("Binding IDs are out of range: " + studentId + ", " + bookId);
+                }
+                status = BindingStatus.BOUND;
+                if (bindingSet.add(key)) {
+                    addAdjacent(studentBooks, studentId, bookId);
+                    addAdjacent(bookStudents, bookId, studentId);
+                    fireBindingChanged(studentId, bookId);
+                    added[i] = true;
+                }
+            }
+            statuses[i] = status;
+        }
+
+        /* Student or book removed meanwhile, don't leave orphan bindings */
+        check = new ExistenceCheck();
+        for (int i = 0; i < statuses.length; i++) {
+            if (added[i]) {
+                Binding binding = bindings.get(i);
+                BindingStatus status = check.of(binding.getStudentId(), binding.getBookId());
+                if (status != null) {
+                    removeBinding(binding.getStudentId(), binding.getBookId());
+                    statuses[i] = status;
+                }
+            }
+        }
+        return statuses;
+    }
+
+    /* Same as unbind() for a whole batch, in one pass */
+    public BindingStatus[] unbindAll(List<Binding> bindings) {
+        BindingStatus[] statuses = new BindingStatus[bindings.size()];
+        ExistenceCheck check = new ExistenceCheck();
+        for (int i = 0; i < statuses.length; i++) {
+            Binding binding = bindings.get(i);
+            BindingStatus status = check.of(binding.getStudentId(), binding.getBookId());
+            if (status == null) {
+                removeBinding(binding.getStudentId(), binding.getBookId());
+                status = BindingStatus.UNBOUND;
+            }
+            statuses[i] = status;
+        }
+        return statuses;
     }
 
     public boolean isBound(long studentId, long bookId) {
-        Binding binding = new Binding();
-        binding.setStudentId(studentId);
-        binding.setBookId(bookId);
+        return bindingSet.contains(bindingKey(studentId, bookId));
+    }
 
-        return bindingSet.contains(binding);
+    /* Same as isBound(), but tells a missing student or book apart */
+    public BindingStatus getBindingStatus(long studentId, long bookId) {
+        BindingStatus status = checkBinding(studentId, bookId);
+        if (status != null) {
+            return status;
+        }
+        return isBound(studentId, bookId) ? BindingStatus.BOUND : BindingStatus.UNBOUND;
     }
 
     public List<Book> getBoundBooks(long studentId) {
-        return bindingSet.stream()
-                .filter(b -> b.getStudentId() == studentId)
-                .map(b -> b.getBookId())
-                .map(id -> bookMap.get(id))
-                .collect(Collectors.toList());
+        ConcurrentLongSet bookIds = studentBooks.get(studentId);
+        if (bookIds == null) {
+            return Collections.emptyList();
+        }
+
+        List<Book> books = new ArrayList<>(bookIds.size());
+        bookIds.forEach(bookId -> {
+            Book book = bookMap.get(bookId);
+            if (book != null) {
+                books.add(book);
+            }
+        });
+        return books;
+    }
+
+    private BindingStatus checkBinding(long studentId, long bookId) {
+        if (!studentMap.containsKey(studentId)) {
+            return BindingStatus.NO_STUDENT;
+        }
+        if (!bookMap.containsKey(bookId)) {
+            return BindingStatus.NO_BOOK;
+        }
+        return null;
+    }
+
+    private void removeBinding(long studentId, long bookId) {
+        long key = bindingKey(studentId, bookId);
+        if (key != NO_KEY && bindingSet.remove(key)) {
+            removeAdjacent(studentBooks, studentId, bookId);
+            removeAdjacent(bookStudents, bookId, studentId);
+            fireBindingChanged(studentId, bookId);
+        }
+    }
+
+    /* Restore API used by persistence: puts entities with their IDs as is */
+
+    void putBook(Book book) {
+        Book replaced = bookMap.put(book.getId(), book);
+        if (replaced != null) {
+            bookIndex.remove(replaced);
+        }
+        bookIndex.add(book);
+        bookSequence.accumulateAndGet(book.getId(), Math::max);
+        bookVersion.incrementAndGet();
+        fireBookChanged(book.getId());
+    }
+
+    void putStudent(Student student) {
+        studentMap.put(student.getId(), student);
+        studentSequence.accumulateAndGet(student.getId(), Math::max);
+        studentVersion.incrementAndGet();
+        fireStudentChanged(student.getId());
+    }
+
+    /* Skips bindings to entities that are gone, snapshot of bindings can be newer than entity lists */
+    void putBindingKey(long key) {
+        long studentId = key >>> 32;
+        long bookId = key & MAX_BINDING_ID;
+        if (studentMap.containsKey(studentId) && bookMap.containsKey(bookId)) {
+            bind(studentId, bookId);
+        }
+    }
+
+    void forEachBindingKey(LongConsumer action) {
+        bindingSet.forEach(action);
+    }
+
+    long getBookSequence() {
+        return bookSequence.get();
+    }
+
+    long getStudentSequence() {
+        return studentSequence.get();
+    }
+
+    /* Sequences never go back, so IDs of removed entities are not reused after restore */
+    void advanceSequences(long bookSeq, long studentSeq) {
+        bookSequence.accumulateAndGet(bookSeq, Math::max);
+        studentSequence.accumulateAndGet(studentSeq, Math::max);
+    }
+
+    /* Student ID in the high half, book ID in the low half; IDs are sequence values below 2^32 */
+    static long bindingKey(long studentId, long bookId) {
+        if (studentId <= 0 || studentId > MAX_BINDING_ID || bookId <= 0 || bookId > MAX_BINDING_ID) {
+            return NO_KEY;
+        }
+        return studentId << 32 | bookId;
+    }
+
+    private void fireBookChanged(long bookId) {
+        for (RepositoryListener listener : listeners) {
+            listener.bookChanged(bookId);
+        }
+    }
+
+    private void fireStudentChanged(long studentId) {
+        for (RepositoryListener listener : listeners) {
+            listener.studentChanged(studentId);
+        }
+    }
+
+    private void fireBindingChanged(long studentId, long bookId) {
+        for (RepositoryListener listener : listeners) {
+            listener.bindingChanged(studentId, bookId);
+        }
+    }
+
+    private static void addAdjacent(Map<Long, ConcurrentLongSet> index, long key, long value) {
+        index.compute(key, (k, set) -> {
+            if (set == null) {
+                set = new ConcurrentLongSet(1, 4);
+            }
+            set.add(value);
+            return set;
+        });
+    }
+
+    private static void removeAdjacent(Map<Long, ConcurrentLongSet> index, long key, long value) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(value);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static <T> List<T> page(ConcurrentNavigableMap<Long, T> map, long afterId, int limit) {
+        List<T> list = new ArrayList<>(limit);
+        for (T value : map.tailMap(afterId, false).values()) {
+            if (list.size() >= limit) {
+                break;
+            }
+            list.add(value);
+        }
+        return list;
+    }
+
+    /* Same as checkBinding(), remembers the last student and book, which batches usually repeat */
+    private class ExistenceCheck {
+        private long studentId = NO_KEY;
+        private boolean studentFound;
+        private long bookId = NO_KEY;
+        private boolean bookFound;
+
+        BindingStatus of(long studentId, long bookId) {
+            if (studentId != this.studentId || this.studentId == NO_KEY) {
+                this.studentId = studentId;
+                this.studentFound = studentMap.containsKey(studentId);
+            }
+            if (!studentFound) {
+                return BindingStatus.NO_STUDENT;
+            }
+            if (bookId != this.bookId || this.bookId == NO_KEY) {
+                this.bookId = bookId;
+                this.bookFound = bookMap.containsKey(bookId);
+            }
+            return bookFound ? null : BindingStatus.NO_BOOK;
+        }
     }
 }
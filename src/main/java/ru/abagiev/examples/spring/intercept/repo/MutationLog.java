@@ -0,0 +1,21 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+public interface MutationLog {
+
+    /**
+     * Applies a repository mutation and completes with its result once the records describing it are durable.
+     * Nothing is written if the mutation throws.
+     */
+    <T> Mono<T> applyAll(Callable<T> mutation, Function<? super T, List<JournalRecord>> records);
+
+    default <T> Mono<T> apply(Callable<T> mutation, Function<? super T, JournalRecord> record) {
+        return applyAll(mutation, result -> Collections.singletonList(record.apply(result)));
+    }
+}
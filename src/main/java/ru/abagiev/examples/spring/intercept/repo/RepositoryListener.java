@@ -0,0 +1,13 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+/* Notified after a change is visible to readers, on the thread that made it */
+public interface RepositoryListener {
+
+    /* Book added, restored or removed */
+    void bookChanged(long bookId);
+
+    void studentChanged(long studentId);
+
+    /* Binding added or removed, including cascades of removals */
+    void bindingChanged(long studentId, long bookId);
+}
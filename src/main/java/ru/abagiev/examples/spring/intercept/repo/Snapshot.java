@@ -0,0 +1,22 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/* Immutable copy of a collection taken at a known version */
+@Getter
+@ToString
+public class Snapshot<T> {
+    private final long version;
+    private final List<T> items;
+    /* Strong entity tag, unique across restarts because of the repository epoch */
+    private final String etag;
+
+    Snapshot(long epoch, long version, List<T> items) {
+        this.version = version;
+        this.items = items;
+        this.etag = "\"" + Long.toHexString(epoch) + "-" + version + "\"";
+    }
+}
@@ -0,0 +1,209 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import ru.abagiev.examples.spring.intercept.model.Book;
+import ru.abagiev.examples.spring.intercept.model.Student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary snapshot of LibraryRepository written and read through memory-mapped files.
+ *
+ * Layout: header (magic, format, book and student sequences, section sizes),
+ * then books (id, title, author), students (id, last name, first name) and packed binding keys.
+ * Strings are stored as UTF-8 with int length, -1 stands for null.
+ */
+public final class SnapshotFile {
+
+    private static final int MAGIC = 0x4C494253;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4;
+
+    private SnapshotFile() {
+    }
+
+    /* Writes to a temporary file next to the target and atomically replaces it */
+    public static Stats write(LibraryRepository repo, Path path) throws IOException {
+        /* Snapshot lists are consistent copies; bindings may be slightly newer and are checked on load */
+        long bookSequence = repo.getBookSequence();
+        long studentSequence = repo.getStudentSequence();
+        List<Book> books = repo.getBookSnapshot().getItems();
+        List<Student> students = repo.getStudentSnapshot().getItems();
+        long[] bindings = collectBindings(repo);
+        int bindingCount = (int) bindings[0];
+
+        byte[][] strings = new byte[books.size() * 2 + students.size() * 2][];
+        long size = HEADER_SIZE + 8L * bindingCount;
+        int s = 0;
+        for (Book b : books) {
+            size += 8 + encode(strings, s++, b.getTitle()) + encode(strings, s++, b.getAuthor());
+        }
+        for (Student st : students) {
+            size += 8 + encode(strings, s++, st.getLastName()) + encode(strings, s++, st.getFirstName());
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot exceeds 2 GB: " + size);
+        }
+
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buf.putInt(MAGIC).putInt(FORMAT)
+                    .putLong(bookSequence).putLong(studentSequence)
+                    .putInt(books.size()).putInt(students.size()).putInt(bindingCount);
+
+            s = 0;
+            for (Book b : books) {
+                buf.putLong(b.getId());
+                putString(buf, strings[s++]);
+                putString(buf, strings[s++]);
+            }
+            for (Student st : students) {
+                buf.putLong(st.getId());
+                putString(buf, strings[s++]);
+                putString(buf, strings[s++]);
+            }
+            for (int i = 1; i <= bindingCount; i++) {
+                buf.putLong(bindings[i]);
+            }
+            buf.force();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(dir);
+        return new Stats(books.size(), students.size(), bindingCount, size);
+    }
+
+    /*
+     * The rename is durable only once the directory entry is, before that a crash may bring the old snapshot back.
+     * Callers rely on it, compaction deletes the old journal segments right after the save.
+     */
+    static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (AccessDeniedException e) {
+            /* Windows can't open a directory, there the move is flushed by the file system itself */
+        }
+    }
+
+    /* Decodes the mapped file in a single sequential pass straight into the repository */
+    public static Stats read(Path path, LibraryRepository repo) throws IOException {
+        long size;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = ch.size();
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < HEADER_SIZE || buf.getInt() != MAGIC) {
+                throw new IOException("Not a library snapshot: " + path);
+            }
+            int format = buf.getInt();
+            if (format != FORMAT) {
+                throw new IOException("Unsupported snapshot format " + format + ": " + path);
+            }
+
+            long bookSequence = buf.getLong();
+            long studentSequence = buf.getLong();
+            int bookCount = buf.getInt();
+            int studentCount = buf.getInt();
+            int bindingCount = buf.getInt();
+
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < bookCount; i++) {
+                Book b = new Book();
+                b.setId(buf.getLong());
+                scratch = ensure(scratch, buf);
+                b.setTitle(getString(buf, scratch));
+                scratch = ensure(scratch, buf);
+                b.setAuthor(getString(buf, scratch));
+                repo.putBook(b);
+            }
+            for (int i = 0; i < studentCount; i++) {
+                Student st = new Student();
+                st.setId(buf.getLong());
+                scratch = ensure(scratch, buf);
+                st.setLastName(getString(buf, scratch));
+                scratch = ensure(scratch, buf);
+                st.setFirstName(getString(buf, scratch));
+                repo.putStudent(st);
+            }
+            for (int i = 0; i < bindingCount; i++) {
+                repo.putBindingKey(buf.getLong());
+            }
+
+            repo.advanceSequences(bookSequence, studentSequence);
+            return new Stats(bookCount, studentCount, bindingCount, size);
+        }
+    }
+
+    /* Returns array with the count in the first element followed by the keys */
+    private static long[] collectBindings(LibraryRepository repo) {
+        long[][] holder = {new long[1024]};
+        int[] count = {0};
+        repo.forEachBindingKey(key -> {
+            long[] keys = holder[0];
+            if (count[0] + 1 >= keys.length) {
+                keys = holder[0] = Arrays.copyOf(keys, keys.length * 2);
+            }
+            keys[++count[0]] = key;
+        });
+        holder[0][0] = count[0];
+        return holder[0];
+    }
+
+    private static int encode(byte[][] strings, int index, String value) {
+        byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        strings[index] = bytes;
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        if (bytes == null) {
+            buf.putInt(-1);
+        } else {
+            buf.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    /* Grows scratch buffer for the string at current position */
+    private static byte[] ensure(byte[] scratch, ByteBuffer buf) {
+        int length = buf.getInt(buf.position());
+        return length > scratch.length ? new byte[length] : scratch;
+    }
+
+    private static String getString(ByteBuffer buf, byte[] scratch) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        buf.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Stats {
+        private final int books;
+        private final int students;
+        private final int bindings;
+        private final long bytes;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.abagiev.examples.spring.intercept.config.LibraryProperties;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@ConditionalOnProperty(prefix = "library.persistence", name = "mode", havingValue = "snapshot")
+@Slf4j
+public class SnapshotPersistence {
+
+    private final LibraryRepository repo;
+    private final Path path;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotPersistence(LibraryRepository repo, LibraryProperties properties) {
+        this.repo = repo;
+        this.path = Paths.get(properties.getPersistence().getSnapshotPath());
+        this.intervalMillis = properties.getPersistence().getSnapshotInterval().toMillis();
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (Files.exists(path)) {
+            long start = System.nanoTime();
+            SnapshotFile.Stats stats = SnapshotFile.read(path, repo);
+            log.info("Loaded snapshot " + path + ": " + stats + ", time=" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        if (intervalMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "library-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay(this::saveQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        saveQuietly();
+    }
+
+    public synchronized SnapshotFile.Stats save() throws IOException {
+        long start = System.nanoTime();
+        SnapshotFile.Stats stats = SnapshotFile.write(repo, path);
+        log.info("Saved snapshot " + path + ": " + stats + ", time=" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return stats;
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to save snapshot " + path, e);
+        }
+    }
+}
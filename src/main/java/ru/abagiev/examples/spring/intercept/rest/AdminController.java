@@ -0,0 +1,126 @@
+package ru.abagiev.examples.spring.intercept.rest;
+
+import lombok.*;
+import org.slf4j.event.Level;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.config.InterceptControl;
+import ru.abagiev.examples.spring.intercept.config.MappingDef;
+import ru.abagiev.examples.spring.intercept.config.SlowCall;
+import ru.abagiev.examples.spring.intercept.limit.ConcurrencyLimit;
+import ru.abagiev.examples.spring.intercept.log.LogPolicy;
+import ru.abagiev.examples.spring.intercept.log.LogSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* Interception settings of endpoints, changed at runtime until restart, and the latest slow calls */
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+@ConcurrencyLimit(exempt = true)
+public class AdminController {
+
+    private final InterceptControl control;
+
+    @GetMapping("endpoints")
+    @LogPolicy(errorsOnly = true)
+    public Mono<EndpointListDto> getEndpoints() {
+        return Mono.fromCallable(() -> {
+            List<EndpointDto> list = new ArrayList<>();
+            for (InterceptControl.Endpoint endpoint : control.getEndpoints()) {
+                list.add(toDto(endpoint));
+            }
+            return new EndpointListDto(list);
+        });
+    }
+
+    /* Settings missing in the request are kept */
+    @PostMapping("endpoints/update")
+    public Mono<EndpointDto> update(@RequestBody UpdateDto dto) {
+        return Mono.fromCallable(() -> {
+            InterceptControl.Endpoint endpoint = getEndpoint(dto.getMethod(), dto.getPath());
+            LogSettings current = endpoint.getSettings();
+            endpoint.update(LogSettings.of(
+                    dto.getSampleRate() != null ? dto.getSampleRate() : current.getSampleRate(),
+                    dto.getMaxReqChars() != null ? dto.getMaxReqChars() : current.getMaxReqChars(),
+                    dto.getMaxRspChars() != null ? dto.getMaxRspChars() : current.getMaxRspChars(),
+                    dto.getErrorsOnly() != null ? dto.getErrorsOnly() : current.isErrorsOnly(),
+                    dto.getLevel() != null ? dto.getLevel() : current.getLevel(),
+                    dto.getSlowMillis() != null ? dto.getSlowMillis() : current.getSlowMillis()));
+            return toDto(endpoint);
+        });
+    }
+
+    /* Back to @LogPolicy and intercept.log.* */
+    @PostMapping("endpoints/reset")
+    public Mono<EndpointDto> reset(@RequestBody UpdateDto dto) {
+        return Mono.fromCallable(() -> {
+            InterceptControl.Endpoint endpoint = getEndpoint(dto.getMethod(), dto.getPath());
+            endpoint.reset();
+            return toDto(endpoint);
+        });
+    }
+
+    @GetMapping("slow")
+    @LogPolicy(errorsOnly = true)
+    public Mono<SlowCallListDto> getSlowCalls(@RequestParam(defaultValue = "100") int limit) {
+        return Mono.fromCallable(() -> new SlowCallListDto(control.getSlowCalls(Math.max(1, limit))));
+    }
+
+    private InterceptControl.Endpoint getEndpoint(RequestMethod method, String path) {
+        InterceptControl.Endpoint endpoint = method != null && path != null ? control.getEndpoint(MappingDef.of(method, path)) : null;
+        if (endpoint == null) {
+            throw new IllegalArgumentException("Unknown endpoint " + method + " " + path);
+        }
+        return endpoint;
+    }
+
+    private static EndpointDto toDto(InterceptControl.Endpoint endpoint) {
+        return new EndpointDto(endpoint.getMapping().getMethod(), endpoint.getMapping().getPath(), endpoint.getSettings());
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    public static class UpdateDto {
+        /* Method and path template as listed by GET /admin/endpoints */
+        private RequestMethod method;
+        private String path;
+        private Level level;
+        private Double sampleRate;
+        private Integer maxReqChars;
+        private Integer maxRspChars;
+        private Boolean errorsOnly;
+        private Long slowMillis;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class EndpointDto {
+        private RequestMethod method;
+        private String path;
+        private LogSettings settings;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class EndpointListDto {
+        private List<EndpointDto> endpoints;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class SlowCallListDto {
+        private List<SlowCall> calls;
+    }
+}
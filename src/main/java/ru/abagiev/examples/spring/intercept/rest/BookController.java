@@ -1,39 +1,129 @@
 package ru.abagiev.examples.spring.intercept.rest;
 
 import lombok.*;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.cache.Encoded;
+import ru.abagiev.examples.spring.intercept.cache.ResponseCache;
+import ru.abagiev.examples.spring.intercept.limit.ConcurrencyLimit;
+import ru.abagiev.examples.spring.intercept.log.LogPolicy;
+import ru.abagiev.examples.spring.intercept.config.WebConfig;
+import ru.abagiev.examples.spring.intercept.model.BatchResult;
 import ru.abagiev.examples.spring.intercept.model.Book;
-import ru.abagiev.examples.spring.intercept.model.Student;
 import ru.abagiev.examples.spring.intercept.service.LibraryService;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/book")
 @RequiredArgsConstructor
 public class BookController {
 
+    private static final String[] IMPORT_COLUMNS = {"title", "author"};
+    private static final String[] EXPORT_COLUMNS = {"id", "title", "author"};
+
     private final LibraryService service;
+    private final CatalogFormat catalogFormat;
+    private final ResponseCache cache;
 
     @PostMapping("add")
     public Mono<Book> add(@RequestBody AddDto dto) {
         return service.addBook(dto.getTitle(), dto.getAuthor());
     }
 
+    /* Logged as a single line: batch counters and the head of the request only */
+    @PostMapping("add/batch")
+    @ConcurrencyLimit(group = "bulk")
+    @LogPolicy(maxReqChars = 128, maxRspChars = 64)
+    public Mono<BatchResult<Book>> addBatch(@RequestBody List<AddDto> dtos) {
+        List<Book> books = new ArrayList<>(dtos.size());
+        for (AddDto dto : dtos) {
+            books.add(toBook(dto.getTitle(), dto.getAuthor()));
+        }
+        return service.addBooks(books);
+    }
+
+    /* Body is parsed while it is being received, IDs in the input are ignored. CSV needs a header row with title and author columns */
+    @PostMapping(value = "import", consumes = {WebConfig.APPLICATION_NDJSON_VALUE, WebConfig.TEXT_CSV_VALUE})
+    @ConcurrencyLimit(group = "bulk")
+    @LogPolicy(maxRspChars = 256)
+    public Mono<CatalogFormat.ImportDto> importAll(ServerHttpRequest request) {
+        CatalogFormat.ImportDto result = new CatalogFormat.ImportDto();
+        Flux<Book> books = catalogFormat.read(request, Book.class, IMPORT_COLUMNS, row -> toBook(row[0], row[1]), result);
+        return service.importBooks(books).map(count -> {
+            result.add(count);
+            return result;
+        });
+    }
+
+    @GetMapping("export")
+    public Flux<DataBuffer> exportAll(@RequestParam(defaultValue = "ndjson") String format, ServerHttpResponse response) {
+        return catalogFormat.write(response, CatalogFormat.Format.valueOf(format.toUpperCase(Locale.ROOT)), service.streamAllBooks(),
+                EXPORT_COLUMNS, book -> new Object[]{book.getId(), book.getTitle(), book.getAuthor()});
+    }
+
     @GetMapping("all")
-    public Mono<BookListDto> getAll() {
-        return service.getAllBooks().map(BookListDto::new);
+    @LogPolicy(maxRspChars = 256)
+    public Mono<BookListDto> getAll(ServerWebExchange exchange) {
+        /* Unchanged catalog is answered with 304 by ETag, snapshot list is shared between calls */
+        return service.getBookSnapshot().flatMap(snapshot -> exchange.checkNotModified(snapshot.getEtag())
+                ? Mono.empty()
+                : Mono.just(new BookListDto(snapshot.getItems())));
+    }
+
+    @GetMapping(value = "stream", produces = {MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE})
+    public Flux<Book> stream() {
+        return service.streamAllBooks();
     }
 
-    @GetMapping("{id}")
-    public Mono<Book> getById(@PathVariable Long id) {
-        return service.getBook(id);
+    @GetMapping("page")
+    @LogPolicy(maxRspChars = 256)
+    public Mono<BookPageDto> page(@RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit) {
+        return service.getBooksPage(after, limit).map(books -> new BookPageDto(books, nextCursor(books, LibraryService.pageSize(limit))));
+    }
+
+    /* Books having all words of the query with the lowest IDs, the last word may be incomplete */
+    @GetMapping("search")
+    @LogPolicy(maxRspChars = 256)
+    public Mono<BookListDto> search(@RequestParam String q, @RequestParam(defaultValue = "20") int limit) {
+        return service.searchBooks(q, limit).map(BookListDto::new);
+    }
+
+    /* Indexed words of titles and authors starting with the prefix */
+    @GetMapping("suggest")
+    public Mono<SuggestDto> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        return service.suggestBookTokens(prefix, limit).map(SuggestDto::new);
+    }
+
+    /* Encoded book JSON from the response cache */
+    @GetMapping(value = "{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Encoded<Book>> getById(@PathVariable Long id) {
+        return cache.get(ResponseCache.Kind.BOOK, id, () -> service.getBook(id));
     }
 
     @PostMapping("{id}/remove")
     public Mono<Void> remove(@PathVariable Long id) {
-        return service.removeStudent(id);
+        return service.removeBook(id);
+    }
+
+    private static Book toBook(String title, String author) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor(author);
+        return book;
+    }
+
+    /* Page is the last one if it is shorter than the page size actually served, not the requested limit */
+    private static Long nextCursor(List<Book> books, int limit) {
+        return books.isEmpty() || books.size() < limit ? null : books.get(books.size() - 1).getId();
     }
 
     @Getter
@@ -52,4 +142,24 @@ public class BookController {
     public static class BookListDto {
         private List<Book> books;
     }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class SuggestDto {
+        private List<String> words;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class BookPageDto {
+        private List<Book> books;
+        /* Pass as "after" to get the next page, null on the last page */
+        private Long next;
+    }
 }
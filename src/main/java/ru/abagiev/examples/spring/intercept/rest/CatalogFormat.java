@@ -0,0 +1,220 @@
+package ru.abagiev.examples.spring.intercept.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import ru.abagiev.examples.spring.intercept.config.WebConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Line based catalog import and export in NDJSON and CSV.
+ * <p>
+ * Import decodes the request body line by line as buffers arrive, so only the current line and the chunk being
+ * added to the repository are held in memory. Export writes items in chunks of {@link #EXPORT_CHUNK} straight into
+ * response buffers. CSV has a header row, columns are matched by name, quoted values may not span lines.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogFormat {
+
+    public static final int EXPORT_CHUNK = 256;
+
+    private static final StringDecoder LINES = StringDecoder.allMimeTypes(Collections.singletonList("\n"), true);
+    private static final ResolvableType STRING_TYPE = ResolvableType.forClass(String.class);
+    /* Error messages of skipped lines beyond this count are not kept */
+    private static final int MAX_ERRORS = 10;
+
+    private final ObjectMapper mapper;
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    public static Format formatOf(MediaType contentType) {
+        return contentType != null && WebConfig.TEXT_CSV.isCompatibleWith(contentType) ? Format.CSV : Format.NDJSON;
+    }
+
+    /**
+     * Parses request body lines into items. Blank lines are ignored, lines that fail to parse are skipped and
+     * counted in the result. CSV values are passed to the row factory in the order of the columns argument.
+     */
+    public <T> Flux<T> read(ServerHttpRequest request, Class<T> jsonType, String[] columns,
+                            Function<String[], T> csvRow, ImportDto result) {
+        Format format = formatOf(request.getHeaders().getContentType());
+        Flux<String> lines = LINES.decode(request.getBody(), STRING_TYPE, null, Collections.emptyMap());
+        return Flux.defer(() -> {
+            LineParser<T> parser = format == Format.CSV ? new CsvParser<>(columns, csvRow) : line -> mapper.readValue(line, jsonType);
+            int[] lineNumber = {0};
+            return lines.handle((line, sink) -> {
+                lineNumber[0]++;
+                if (line.trim().isEmpty()) {
+                    return;
+                }
+                try {
+                    T item = parser.parse(line);
+                    if (item != null) {
+                        sink.next(item);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    result.skip(lineNumber[0], String.valueOf(e.getMessage()).split("\n", 2)[0]);
+                }
+            });
+        });
+    }
+
+    public <T> Flux<DataBuffer> write(ServerHttpResponse response, Format format, Flux<T> items,
+                                      String[] columns, Function<T, Object[]> csvRow) {
+        response.getHeaders().setContentType(format == Format.CSV ? WebConfig.TEXT_CSV : WebConfig.APPLICATION_NDJSON);
+        DataBufferFactory factory = response.bufferFactory();
+        Flux<DataBuffer> chunks = items.buffer(EXPORT_CHUNK).map(chunk -> {
+            StringBuilder sb = new StringBuilder(chunk.size() * 64);
+            for (T item : chunk) {
+                if (format == Format.CSV) {
+                    appendCsv(sb, csvRow.apply(item));
+                } else {
+                    appendJson(sb, item);
+                }
+            }
+            return toBuffer(factory, sb);
+        });
+        if (format == Format.CSV) {
+            return chunks.startWith(Flux.defer(() -> Flux.just(toBuffer(factory, appendCsv(new StringBuilder(), columns)))));
+        }
+        return chunks;
+    }
+
+    private void appendJson(StringBuilder sb, Object item) {
+        try {
+            sb.append(mapper.writeValueAsString(item)).append('\n');
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to write " + item, e);
+        }
+    }
+
+    private static DataBuffer toBuffer(DataBufferFactory factory, StringBuilder sb) {
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        return factory.allocateBuffer(bytes.length).write(bytes);
+    }
+
+    static StringBuilder appendCsv(StringBuilder sb, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            String value = values[i] == null ? "" : values[i].toString();
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                sb.append('"').append(value.replace("\"", "\"\"").replace('\n', ' ').replace('\r', ' ')).append('"');
+            } else {
+                sb.append(value);
+            }
+        }
+        return sb.append('\n');
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        int end = line.endsWith("\r") ? line.length() - 1 : line.length();
+        for (int i = 0; i < end; i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < end && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    @FunctionalInterface
+    private interface LineParser<T> {
+        /* Returns null for lines that carry no item */
+        T parse(String line) throws IOException;
+    }
+
+    /* First line is the header, maps requested columns to their positions */
+    private static class CsvParser<T> implements LineParser<T> {
+        private final String[] columns;
+        private final Function<String[], T> row;
+        private int[] positions;
+
+        CsvParser(String[] columns, Function<String[], T> row) {
+            this.columns = columns;
+            this.row = row;
+        }
+
+        @Override
+        public T parse(String line) {
+            List<String> values = splitCsv(line);
+            if (positions == null) {
+                positions = new int[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    positions[i] = values.indexOf(columns[i]);
+                }
+                return null;
+            }
+
+            String[] rowValues = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                int position = positions[i];
+                rowValues[i] = position >= 0 && position < values.size() ? values.get(position) : null;
+            }
+            return row.apply(rowValues);
+        }
+    }
+
+    @Getter
+    @ToString
+    public static class ImportDto {
+        private long imported;
+        private long skipped;
+        /* Line numbers and messages of the first skipped lines */
+        private final List<String> errors = new ArrayList<>();
+
+        void add(long count) {
+            imported += count;
+        }
+
+        void skip(int line, String error) {
+            skipped++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add("Line " + line + ": " + error);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.abagiev.examples.spring.intercept.rest;
+
+import lombok.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ServerWebExchange;
+import ru.abagiev.examples.spring.intercept.limit.LimitExceededException;
+import ru.abagiev.examples.spring.intercept.model.NotFoundException;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * Errors with a known status are rendered by the handler adapter, before they reach the default error handling.
+ * The handled error is kept in the exchange, the handler adapter interception mode only sees the rendered response.
+ */
+@RestControllerAdvice
+public class ErrorHandler {
+
+    public static final String ERROR_ATTRIBUTE = ErrorHandler.class.getName() + ".ERROR";
+
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<ErrorDto> notFound(NotFoundException e, ServerWebExchange exchange) {
+        return error(HttpStatus.NOT_FOUND, e, exchange);
+    }
+
+    /* Invalid input, such as an oversized batch or out of range IDs */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorDto> badRequest(IllegalArgumentException e, ServerWebExchange exchange) {
+        return error(HttpStatus.BAD_REQUEST, e, exchange);
+    }
+
+    /* Queue of the operation executor is full */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ErrorDto> unavailable(RejectedExecutionException e, ServerWebExchange exchange) {
+        return error(HttpStatus.SERVICE_UNAVAILABLE, e, exchange);
+    }
+
+    /* Call shed by the concurrency limit of the endpoint */
+    @ExceptionHandler(LimitExceededException.class)
+    public ResponseEntity<ErrorDto> limitExceeded(LimitExceededException e, ServerWebExchange exchange) {
+        exchange.getAttributes().put(ERROR_ATTRIBUTE, e);
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(new ErrorDto(status.value(), status.getReasonPhrase(), e.getMessage()));
+    }
+
+    private static ResponseEntity<ErrorDto> error(HttpStatus status, Exception e, ServerWebExchange exchange) {
+        exchange.getAttributes().put(ERROR_ATTRIBUTE, e);
+        return ResponseEntity.status(status).body(new ErrorDto(status.value(), status.getReasonPhrase(), e.getMessage()));
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class ErrorDto {
+        private int status;
+        private String error;
+        private String message;
+    }
+}
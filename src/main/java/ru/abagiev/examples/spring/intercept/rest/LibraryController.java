@@ -1,11 +1,22 @@
 package ru.abagiev.examples.spring.intercept.rest;
 
 import lombok.*;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.cache.Encoded;
+import ru.abagiev.examples.spring.intercept.cache.ResponseCache;
+import ru.abagiev.examples.spring.intercept.coalesce.Coalesce;
+import ru.abagiev.examples.spring.intercept.limit.ConcurrencyLimit;
+import ru.abagiev.examples.spring.intercept.log.LogPolicy;
+import ru.abagiev.examples.spring.intercept.config.WebConfig;
+import ru.abagiev.examples.spring.intercept.model.BatchResult;
+import ru.abagiev.examples.spring.intercept.model.Binding;
 import ru.abagiev.examples.spring.intercept.model.Book;
 import ru.abagiev.examples.spring.intercept.service.LibraryService;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -14,6 +25,7 @@ import java.util.List;
 public class LibraryController {
 
     private final LibraryService service;
+    private final ResponseCache cache;
 
     @PostMapping("bind")
     public Mono<Void> bind(@RequestBody KeyDto key) {
@@ -25,14 +37,48 @@ public class LibraryController {
         return service.unbind(key.getStudentId(), key.getBookId());
     }
 
+    /* Logged as a single line: batch counters and the head of the request only */
+    @PostMapping("bind/batch")
+    @ConcurrencyLimit(group = "bulk")
+    @LogPolicy(maxReqChars = 128, maxRspChars = 64)
+    public Mono<BatchResult<Void>> bindBatch(@RequestBody List<KeyDto> keys) {
+        return service.bindAll(toBindings(keys));
+    }
+
+    @PostMapping("unbind/batch")
+    @ConcurrencyLimit(group = "bulk")
+    @LogPolicy(maxReqChars = 128, maxRspChars = 64)
+    public Mono<BatchResult<Void>> unbindBatch(@RequestBody List<KeyDto> keys) {
+        return service.unbindAll(toBindings(keys));
+    }
+
     @GetMapping("student/{studentId}/bound/{bookId}")
     public Mono<BoundDto> bound(@PathVariable Long studentId, @PathVariable Long bookId) {
         return service.isBound(studentId, bookId).map(BoundDto::new);
     }
 
-    @GetMapping("student/{studentId}/all")
-    public Mono<BookListDto> getBoundBooks(@PathVariable Long studentId) {
-        return service.getBoundBooks(studentId).map(BookListDto::new);
+    /* Encoded list JSON from the response cache, invalidated by any binding change of the student; a burst of misses runs once */
+    @GetMapping(value = "student/{studentId}/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Coalesce
+    @LogPolicy(maxRspChars = 256)
+    public Mono<Encoded<BookListDto>> getBoundBooks(@PathVariable Long studentId) {
+        return cache.get(ResponseCache.Kind.BOUND_BOOKS, studentId, () -> service.getBoundBooks(studentId).map(BookListDto::new));
+    }
+
+    @GetMapping(value = "student/{studentId}/stream", produces = {MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE})
+    public Flux<Book> streamBoundBooks(@PathVariable Long studentId) {
+        return service.streamBoundBooks(studentId);
+    }
+
+    private static List<Binding> toBindings(List<KeyDto> keys) {
+        List<Binding> bindings = new ArrayList<>(keys.size());
+        for (KeyDto key : keys) {
+            Binding binding = new Binding();
+            binding.setStudentId(key.getStudentId());
+            binding.setBookId(key.getBookId());
+            bindings.add(binding);
+        }
+        return bindings;
     }
 
     @Getter
@@ -0,0 +1,50 @@
+package ru.abagiev.examples.spring.intercept.rest;
+
+import lombok.*;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.cache.CacheSnapshot;
+import ru.abagiev.examples.spring.intercept.cache.ResponseCache;
+import ru.abagiev.examples.spring.intercept.coalesce.CoalesceSnapshot;
+import ru.abagiev.examples.spring.intercept.config.InterceptControl;
+import ru.abagiev.examples.spring.intercept.exec.ExecutionSnapshot;
+import ru.abagiev.examples.spring.intercept.exec.OperationExecutor;
+import ru.abagiev.examples.spring.intercept.limit.ConcurrencyLimit;
+import ru.abagiev.examples.spring.intercept.limit.LimiterSnapshot;
+import ru.abagiev.examples.spring.intercept.log.LogPolicy;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetricsRegistry;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointSnapshot;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/metrics")
+@RequiredArgsConstructor
+@ConcurrencyLimit(exempt = true)
+public class MetricsController {
+
+    private final EndpointMetricsRegistry registry;
+    private final ResponseCache cache;
+    private final OperationExecutor executor;
+    private final InterceptControl control;
+
+    @GetMapping
+    @LogPolicy(errorsOnly = true)
+    public Mono<MetricsDto> getAll() {
+        return Mono.fromCallable(() -> new MetricsDto(registry.snapshot(), cache.snapshot(), executor.snapshot(),
+                control.getLimits(), control.getCoalescing()));
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class MetricsDto {
+        private List<EndpointSnapshot> endpoints;
+        private CacheSnapshot cache;
+        private List<ExecutionSnapshot> execution;
+        private List<LimiterSnapshot> limits;
+        private List<CoalesceSnapshot> coalescing;
+    }
+}
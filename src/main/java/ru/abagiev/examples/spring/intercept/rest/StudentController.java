@@ -1,33 +1,99 @@
 package ru.abagiev.examples.spring.intercept.rest;
 
 import lombok.*;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.cache.Encoded;
+import ru.abagiev.examples.spring.intercept.cache.ResponseCache;
+import ru.abagiev.examples.spring.intercept.limit.ConcurrencyLimit;
+import ru.abagiev.examples.spring.intercept.log.LogPolicy;
+import ru.abagiev.examples.spring.intercept.config.WebConfig;
+import ru.abagiev.examples.spring.intercept.model.BatchResult;
 import ru.abagiev.examples.spring.intercept.model.Student;
 import ru.abagiev.examples.spring.intercept.service.LibraryService;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/student")
 @RequiredArgsConstructor
 public class StudentController {
 
+    private static final String[] IMPORT_COLUMNS = {"firstName", "lastName"};
+    private static final String[] EXPORT_COLUMNS = {"id", "firstName", "lastName"};
+
     private final LibraryService service;
+    private final CatalogFormat catalogFormat;
+    private final ResponseCache cache;
 
     @PostMapping("add")
     public Mono<Student> add(@RequestBody AddDto dto) {
         return service.addStudent(dto.getFirstName(), dto.getLastName());
     }
 
+    /* Logged as a single line: batch counters and the head of the request only */
+    @PostMapping("add/batch")
+    @ConcurrencyLimit(group = "bulk")
+    @LogPolicy(maxReqChars = 128, maxRspChars = 64)
+    public Mono<BatchResult<Student>> addBatch(@RequestBody List<AddDto> dtos) {
+        List<Student> students = new ArrayList<>(dtos.size());
+        for (AddDto dto : dtos) {
+            students.add(toStudent(dto.getFirstName(), dto.getLastName()));
+        }
+        return service.addStudents(students);
+    }
+
+    /* Body is parsed while it is being received, IDs in the input are ignored. CSV needs a header row with firstName and lastName columns */
+    @PostMapping(value = "import", consumes = {WebConfig.APPLICATION_NDJSON_VALUE, WebConfig.TEXT_CSV_VALUE})
+    @ConcurrencyLimit(group = "bulk")
+    @LogPolicy(maxRspChars = 256)
+    public Mono<CatalogFormat.ImportDto> importAll(ServerHttpRequest request) {
+        CatalogFormat.ImportDto result = new CatalogFormat.ImportDto();
+        Flux<Student> students = catalogFormat.read(request, Student.class, IMPORT_COLUMNS, row -> toStudent(row[0], row[1]), result);
+        return service.importStudents(students).map(count -> {
+            result.add(count);
+            return result;
+        });
+    }
+
+    @GetMapping("export")
+    public Flux<DataBuffer> exportAll(@RequestParam(defaultValue = "ndjson") String format, ServerHttpResponse response) {
+        return catalogFormat.write(response, CatalogFormat.Format.valueOf(format.toUpperCase(Locale.ROOT)), service.streamAllStudents(),
+                EXPORT_COLUMNS, student -> new Object[]{student.getId(), student.getFirstName(), student.getLastName()});
+    }
+
     @GetMapping("all")
-    public Mono<StudentListDto> getAll() {
-        return service.getAllStudents().map(StudentListDto::new);
+    @LogPolicy(maxRspChars = 256)
+    public Mono<StudentListDto> getAll(ServerWebExchange exchange) {
+        /* Unchanged catalog is answered with 304 by ETag, snapshot list is shared between calls */
+        return service.getStudentSnapshot().flatMap(snapshot -> exchange.checkNotModified(snapshot.getEtag())
+                ? Mono.empty()
+                : Mono.just(new StudentListDto(snapshot.getItems())));
+    }
+
+    @GetMapping(value = "stream", produces = {MediaType.APPLICATION_STREAM_JSON_VALUE, WebConfig.APPLICATION_NDJSON_VALUE})
+    public Flux<Student> stream() {
+        return service.streamAllStudents();
     }
 
-    @GetMapping("{id}")
-    public Mono<Student> getById(@PathVariable Long id) {
-        return service.getStudent(id);
+    @GetMapping("page")
+    @LogPolicy(maxRspChars = 256)
+    public Mono<StudentPageDto> page(@RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit) {
+        return service.getStudentsPage(after, limit).map(students -> new StudentPageDto(students, nextCursor(students, LibraryService.pageSize(limit))));
+    }
+
+    /* Encoded student JSON from the response cache */
+    @GetMapping(value = "{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Encoded<Student>> getById(@PathVariable Long id) {
+        return cache.get(ResponseCache.Kind.STUDENT, id, () -> service.getStudent(id));
     }
 
     @PostMapping("{id}/remove")
@@ -35,6 +101,18 @@ public class StudentController {
         return service.removeStudent(id);
     }
 
+    private static Student toStudent(String firstName, String lastName) {
+        Student student = new Student();
+        student.setFirstName(firstName);
+        student.setLastName(lastName);
+        return student;
+    }
+
+    /* Page is the last one if it is shorter than the page size actually served, not the requested limit */
+    private static Long nextCursor(List<Student> students, int limit) {
+        return students.isEmpty() || students.size() < limit ? null : students.get(students.size() - 1).getId();
+    }
+
     @Getter
     @Setter
     @ToString
@@ -51,4 +129,15 @@ public class StudentController {
     public static class StudentListDto {
         private List<Student> students;
     }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class StudentPageDto {
+        private List<Student> students;
+        /* Pass as "after" to get the next page, null on the last page */
+        private Long next;
+    }
 }
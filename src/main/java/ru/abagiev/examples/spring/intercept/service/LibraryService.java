@@ -2,123 +2,282 @@ package ru.abagiev.examples.spring.intercept.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.coalesce.SingleFlight;
+import ru.abagiev.examples.spring.intercept.exec.OperationExecutor;
+import ru.abagiev.examples.spring.intercept.model.BatchResult;
+import ru.abagiev.examples.spring.intercept.model.Binding;
 import ru.abagiev.examples.spring.intercept.model.Book;
+import ru.abagiev.examples.spring.intercept.model.NotFoundException;
 import ru.abagiev.examples.spring.intercept.model.Student;
+import ru.abagiev.examples.spring.intercept.repo.BindingStatus;
+import ru.abagiev.examples.spring.intercept.repo.JournalRecord;
 import ru.abagiev.examples.spring.intercept.repo.LibraryRepository;
+import ru.abagiev.examples.spring.intercept.repo.MutationLog;
+import ru.abagiev.examples.spring.intercept.repo.Snapshot;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+
+import static ru.abagiev.examples.spring.intercept.exec.Operation.*;
 
 @Service
 @RequiredArgsConstructor
 public class LibraryService {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10000;
+    /* Imported items are added in bulk chunks of this size, one chunk at a time */
+    private static final int IMPORT_CHUNK = 1000;
+
     private final LibraryRepository repo;
+    /* Mutations go through the log, which completes them once they are durable */
+    private final MutationLog mutations;
+    /* Every operation runs with the strategy of its kind, imports through the batches they consist of */
+    private final OperationExecutor executor;
+    /* Concurrent reads of the catalog after a change share the rebuild of its snapshot */
+    private final SingleFlight<Class<?>> snapshots = new SingleFlight<>("snapshot");
 
     public Mono<Book> addBook(String title, String author) {
-        return Mono.fromCallable(() -> {
+        return executor.run(WRITE, mutations.apply(() -> {
             return repo.addBook(title, author);
-        });
+        }, JournalRecord::addBook));
+    }
+
+    /* Books are drafts without IDs, all of them are added */
+    public Mono<BatchResult<Book>> addBooks(List<Book> books) {
+        return executor.run(BULK, mutations.applyAll(() -> {
+            checkBatchSize(books.size());
+            List<BatchResult.Item<Book>> items = new ArrayList<>(books.size());
+            for (Book book : repo.addBooks(books)) {
+                items.add(BatchResult.Item.ok(book));
+            }
+            return new BatchResult<>(items);
+        }, result -> records(books, result, JournalRecord::addBook)));
+    }
+
+    /* Consumes books chunk by chunk, the next chunk is requested once the previous one is added; emits added count */
+    public Mono<Long> importBooks(Flux<Book> books) {
+        return books.buffer(IMPORT_CHUNK)
+                .concatMap(this::addBooks, 1)
+                .reduce(0L, (count, result) -> count + result.getSucceeded());
     }
 
     public Mono<List<Book>> getAllBooks() {
-        return Mono.fromCallable(() -> {
+        return executor.run(BULK, Mono.fromCallable(() -> {
             return repo.getAllBooks();
-        });
+        }));
+    }
+
+    public Mono<Snapshot<Book>> getBookSnapshot() {
+        return snapshots.run(Book.class, executor.run(BULK, Mono.fromCallable(() -> {
+            return repo.getBookSnapshot();
+        })));
+    }
+
+    public Flux<Book> streamAllBooks() {
+        return executor.run(BULK, Flux.defer(() -> Flux.fromIterable(repo.getBookValues())));
+    }
+
+    public Mono<List<Book>> getBooksPage(long afterId, int limit) {
+        return executor.run(READ, Mono.fromCallable(() -> {
+            return repo.getBooks(afterId, pageSize(limit));
+        }));
+    }
+
+    public Mono<List<Book>> searchBooks(String query, int limit) {
+        return executor.run(READ, Mono.fromCallable(() -> {
+            return repo.searchBooks(query, pageSize(limit));
+        }));
+    }
+
+    public Mono<List<String>> suggestBookTokens(String prefix, int limit) {
+        return executor.run(READ, Mono.fromCallable(() -> {
+            return repo.suggestBookTokens(prefix, pageSize(limit));
+        }));
     }
 
     public Mono<Book> getBook(long id) {
-        return Mono.fromCallable(() -> {
+        return executor.run(READ, Mono.fromCallable(() -> {
             Book book = repo.getBook(id);
             if (book == null) {
-                throw new RuntimeException("Book is not found by ID " + id);
+                throw NotFoundException.book(id);
             }
             return book;
-        });
+        }));
     }
 
     public Mono<Void> removeBook(long id) {
-        return Mono.fromRunnable(() -> {
-            if (repo.getBook(id) == null) {
-                throw new RuntimeException("Book is not found by ID " + id);
+        return executor.run(WRITE, mutations.apply(() -> {
+            if (!repo.removeBook(id)) {
+                throw NotFoundException.book(id);
             }
-            repo.removeBook(id);
-        });
+            return null;
+        }, v -> JournalRecord.removeBook(id)));
     }
 
     public Mono<Student> addStudent(String firstName, String lastName) {
-        return Mono.fromCallable(() -> {
+        return executor.run(WRITE, mutations.apply(() -> {
             return repo.addStudent(firstName, lastName);
-        });
+        }, JournalRecord::addStudent));
+    }
+
+    public Mono<BatchResult<Student>> addStudents(List<Student> students) {
+        return executor.run(BULK, mutations.applyAll(() -> {
+            checkBatchSize(students.size());
+            List<BatchResult.Item<Student>> items = new ArrayList<>(students.size());
+            for (Student student : repo.addStudents(students)) {
+                items.add(BatchResult.Item.ok(student));
+            }
+            return new BatchResult<>(items);
+        }, result -> records(students, result, JournalRecord::addStudent)));
+    }
+
+    public Mono<Long> importStudents(Flux<Student> students) {
+        return students.buffer(IMPORT_CHUNK)
+                .concatMap(this::addStudents, 1)
+                .reduce(0L, (count, result) -> count + result.getSucceeded());
     }
 
     public Mono<List<Student>> getAllStudents() {
-        return Mono.fromCallable(() -> {
+        return executor.run(BULK, Mono.fromCallable(() -> {
             return repo.getAllStudents();
-        });
+        }));
+    }
+
+    public Mono<Snapshot<Student>> getStudentSnapshot() {
+        return snapshots.run(Student.class, executor.run(BULK, Mono.fromCallable(() -> {
+            return repo.getStudentSnapshot();
+        })));
+    }
+
+    public Flux<Student> streamAllStudents() {
+        return executor.run(BULK, Flux.defer(() -> Flux.fromIterable(repo.getStudentValues())));
+    }
+
+    public Mono<List<Student>> getStudentsPage(long afterId, int limit) {
+        return executor.run(READ, Mono.fromCallable(() -> {
+            return repo.getStudents(afterId, pageSize(limit));
+        }));
     }
 
     public Mono<Student> getStudent(long id) {
-        return Mono.fromCallable(() -> {
+        return executor.run(READ, Mono.fromCallable(() -> {
             Student student = repo.getStudent(id);
             if (student == null) {
-                throw new RuntimeException("Student is not found by ID " + id);
+                throw NotFoundException.student(id);
             }
             return student;
-        });
+        }));
     }
 
     public Mono<Void> removeStudent(long id) {
-        return Mono.fromRunnable(() -> {
-            if (repo.getStudent(id) == null) {
-                throw new RuntimeException("Student is not found by ID " + id);
+        return executor.run(WRITE, mutations.apply(() -> {
+            if (!repo.removeStudent(id)) {
+                throw NotFoundException.student(id);
             }
-            repo.removeStudent(id);
-        });
+            return null;
+        }, v -> JournalRecord.removeStudent(id)));
     }
 
     public Mono<Void> bind(long studentId, long bookId) {
-        return Mono.fromRunnable(() -> {
-            if (repo.getStudent(studentId) == null) {
-                throw new RuntimeException("Student is not found by ID " + studentId);
-            }
-            if (repo.getBook(bookId) == null) {
-                throw new RuntimeException("Book is not found by ID " + bookId);
+        return executor.run(WRITE, mutations.apply(() -> {
+            BindingStatus status = repo.bind(studentId, bookId);
+            if (!status.isFound()) {
+                throw status.toException(studentId, bookId);
             }
-            repo.bind(studentId, bookId);
-        });
+            return null;
+        }, v -> JournalRecord.bind(studentId, bookId)));
     }
 
     public Mono<Void> unbind(long studentId, long bookId) {
-        return Mono.fromRunnable(() -> {
-            if (repo.getStudent(studentId) == null) {
-                throw new RuntimeException("Student is not found by ID " + studentId);
-            }
-            if (repo.getBook(bookId) == null) {
-                throw new RuntimeException("Book is not found by ID " + bookId);
+        return executor.run(WRITE, mutations.apply(() -> {
+            BindingStatus status = repo.unbind(studentId, bookId);
+            if (!status.isFound()) {
+                throw status.toException(studentId, bookId);
             }
-            repo.unbind(studentId, bookId);
-        });
+            return null;
+        }, v -> JournalRecord.unbind(studentId, bookId)));
+    }
+
+    /* Invalid items are reported and skipped, the rest is applied */
+    public Mono<BatchResult<Void>> bindAll(List<Binding> bindings) {
+        return executor.run(BULK, mutations.applyAll(() -> {
+            checkBatchSize(bindings.size());
+            return toBatchResult(bindings, repo.bindAll(bindings));
+        }, result -> records(bindings, result, b -> JournalRecord.bind(b.getStudentId(), b.getBookId()))));
+    }
+
+    public Mono<BatchResult<Void>> unbindAll(List<Binding> bindings) {
+        return executor.run(BULK, mutations.applyAll(() -> {
+            checkBatchSize(bindings.size());
+            return toBatchResult(bindings, repo.unbindAll(bindings));
+        }, result -> records(bindings, result, b -> JournalRecord.unbind(b.getStudentId(), b.getBookId()))));
     }
 
     public Mono<Boolean> isBound(long studentId, long bookId) {
-        return Mono.fromCallable(() -> {
-            if (repo.getStudent(studentId) == null) {
-                throw new RuntimeException("Student is not found by ID " + studentId);
-            }
-            if (repo.getBook(bookId) == null) {
-                throw new RuntimeException("Book is not found by ID " + bookId);
+        return executor.run(READ, Mono.fromCallable(() -> {
+            BindingStatus status = repo.getBindingStatus(studentId, bookId);
+            if (!status.isFound()) {
+                throw status.toException(studentId, bookId);
             }
-            return repo.isBound(studentId, bookId);
-        });
+            return status == BindingStatus.BOUND;
+        }));
     }
 
     public Mono<List<Book>> getBoundBooks(long studentId) {
-        return Mono.fromCallable(() -> {
+        return executor.run(READ, Mono.fromCallable(() -> {
             if (repo.getStudent(studentId) == null) {
-                throw new RuntimeException("Student is not found by ID " + studentId);
+                throw NotFoundException.student(studentId);
             }
             return repo.getBoundBooks(studentId);
-        });
+        }));
+    }
+
+    public Flux<Book> streamBoundBooks(long studentId) {
+        return executor.run(READ, Flux.defer(() -> {
+            if (repo.getStudent(studentId) == null) {
+                return Flux.error(NotFoundException.student(studentId));
+            }
+            return Flux.fromIterable(repo.getBoundBooks(studentId));
+        }));
+    }
+
+    private static void checkBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size " + size + " exceeds " + MAX_BATCH_SIZE);
+        }
+    }
+
+    /* Records of the succeeded items only */
+    private static BatchResult<Void> toBatchResult(List<Binding> bindings, BindingStatus[] statuses) {
+        List<BatchResult.Item<Void>> items = new ArrayList<>(statuses.length);
+        for (int i = 0; i < statuses.length; i++) {
+            BindingStatus status = statuses[i];
+            if (status.isFound()) {
+                items.add(BatchResult.Item.ok(null));
+            } else {
+                Binding binding = bindings.get(i);
+                items.add(BatchResult.Item.failed(status.toException(binding.getStudentId(), binding.getBookId()).getMessage()));
+            }
+        }
+        return new BatchResult<>(items);
+    }
+
+    private static <T> List<JournalRecord> records(List<T> items, BatchResult<?> result, Function<T, JournalRecord> record) {
+        List<JournalRecord> records = new ArrayList<>(result.getSucceeded());
+        for (int i = 0; i < items.size(); i++) {
+            if (result.getItems().get(i).getError() == null) {
+                records.add(record.apply(items.get(i)));
+            }
+        }
+        return records;
+    }
+
+    /* Size of the page served for a requested limit */
+    public static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
     }
 }
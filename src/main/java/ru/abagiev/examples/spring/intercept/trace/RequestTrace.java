@@ -0,0 +1,118 @@
+package ru.abagiev.examples.spring.intercept.trace;
+
+import reactor.util.context.Context;
+import ru.abagiev.examples.spring.intercept.log.RequestLogEvent;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetrics;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Stage timings of a single sampled request, carried in the Reactor {@link Context} of the exchange. Stages are
+ * recorded one after another along the reactive chain, so plain fields are enough. A stage entered more than once,
+ * such as the batches of an import, accumulates its time and keeps the first start.
+ * <p>
+ * The interceptor hands its request log event and metrics over to the trace, they are emitted by
+ * {@link TraceFilter} once the response is written and the trace is complete.
+ */
+public class RequestTrace {
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final long origin = nanoTime();
+    /* Start relative to the origin and total duration per stage, -1 start for stages not entered */
+    private final long[] starts = new long[STAGES.length];
+    private final long[] durations = new long[STAGES.length];
+    private long completed;
+    private EndpointMetrics metrics;
+    private RequestLogEvent event;
+
+    RequestTrace() {
+        Arrays.fill(starts, -1);
+    }
+
+    /* Null if the request is not traced */
+    public static RequestTrace of(Context context) {
+        return context.getOrDefault(RequestTrace.class, null);
+    }
+
+    /* Stages of a call shared by several requests, each of them adds them with recordAll() once the call completes */
+    public static RequestTrace shared() {
+        return new RequestTrace();
+    }
+
+    public void recordAll(RequestTrace shared) {
+        for (Stage stage : STAGES) {
+            int i = stage.ordinal();
+            if (shared.starts[i] >= 0) {
+                long start = shared.origin + shared.starts[i];
+                record(stage, start, start + shared.durations[i]);
+            }
+        }
+    }
+
+    public void record(Stage stage, long startNanos) {
+        record(stage, startNanos, nanoTime());
+    }
+
+    public void record(Stage stage, long startNanos, long endNanos) {
+        int i = stage.ordinal();
+        if (starts[i] < 0) {
+            starts[i] = startNanos - origin;
+        }
+        durations[i] += endNanos - startNanos;
+    }
+
+    /* Handler publisher subscribed */
+    public void subscribed() {
+        record(Stage.REQUEST, origin);
+    }
+
+    /* Handler publisher terminated, event is null when the call is not logged */
+    public void complete(EndpointMetrics metrics, RequestLogEvent event) {
+        this.completed = nanoTime();
+        this.metrics = metrics;
+        this.event = event;
+    }
+
+    public long getDuration(Stage stage) {
+        return starts[stage.ordinal()] >= 0 ? durations[stage.ordinal()] : -1;
+    }
+
+    /* Stages as name:start+duration in microseconds since the start of the exchange */
+    public StringBuilder format(StringBuilder sb) {
+        boolean first = true;
+        for (Stage stage : STAGES) {
+            int i = stage.ordinal();
+            if (starts[i] < 0) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(stage.name().toLowerCase(Locale.ROOT)).append(':')
+                    .append(micros(starts[i])).append('+').append(micros(durations[i]));
+        }
+        return sb;
+    }
+
+    /* Exchange finished; null if the exchange never reached an intercepted handler */
+    RequestLogEvent finish() {
+        if (completed == 0) {
+            return null;
+        }
+        record(Stage.RESPONSE, completed);
+        if (metrics != null) {
+            metrics.recordTrace(this);
+        }
+        return event;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,14 @@
+package ru.abagiev.examples.spring.intercept.trace;
+
+public enum Stage {
+    /* From the start of the exchange to subscription of the handler publisher: routing, body decoding, the handler */
+    REQUEST,
+    /* Service operation waiting for a worker thread */
+    QUEUE,
+    /* Service operation on its thread, including the repository and waiting for the journal */
+    SERVICE,
+    /* Mutation waiting for its journal batch to be forced */
+    JOURNAL,
+    /* From completion of the handler publisher to the end of the exchange: encoding and writing the response */
+    RESPONSE
+}
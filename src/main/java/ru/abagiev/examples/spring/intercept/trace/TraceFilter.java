@@ -0,0 +1,40 @@
+package ru.abagiev.examples.spring.intercept.trace;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import ru.abagiev.examples.spring.intercept.config.InterceptProperties;
+import ru.abagiev.examples.spring.intercept.log.RequestLogEvent;
+import ru.abagiev.examples.spring.intercept.log.RequestLogger;
+
+/* Outermost filter, opens the trace of sampled requests and emits it once the response is written */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class TraceFilter implements WebFilter {
+
+    private final InterceptProperties properties;
+    private final RequestLogger requestLogger;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!properties.getTrace().sample()) {
+            return chain.filter(exchange);
+        }
+
+        RequestTrace trace = new RequestTrace();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    RequestLogEvent event = trace.finish();
+                    if (event != null) {
+                        requestLogger.log(event);
+                    }
+                })
+                .subscriberContext(context -> context.put(RequestTrace.class, trace));
+    }
+}
@@ -0,0 +1,146 @@
+package ru.abagiev.examples.spring.intercept.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import ru.abagiev.examples.spring.intercept.config.LibraryProperties;
+import ru.abagiev.examples.spring.intercept.model.Book;
+import ru.abagiev.examples.spring.intercept.repo.LibraryRepository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResponseCacheTest {
+
+    private final LibraryRepository repo = new LibraryRepository();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void loadsOnceThenHits() {
+        ResponseCache cache = cache(1024 * 1024);
+        Book book = repo.addBook("Dune", "Frank Herbert");
+
+        Encoded<Book> first = cache.get(ResponseCache.Kind.BOOK, book.getId(), () -> load(book)).block();
+        Encoded<Book> second = cache.get(ResponseCache.Kind.BOOK, book.getId(), () -> load(book)).block();
+
+        assertEquals(1, loads.get());
+        assertEquals(first, second);
+        assertEquals("{\"id\":1,\"title\":\"Dune\",\"author\":\"Frank Herbert\"}", new String(first.getBytes()));
+        assertSnapshot(cache, 1, 1, 1, 0);
+    }
+
+    @Test
+    public void repositoryChangesInvalidate() {
+        ResponseCache cache = cache(1024 * 1024);
+        Book book = repo.addBook("Dune", "Frank Herbert");
+        repo.addStudent("Ivan", "Petrov");
+        cache.get(ResponseCache.Kind.BOOK, 1, () -> load(book)).block();
+        cache.get(ResponseCache.Kind.BOUND_BOOKS, 1, () -> load(book)).block();
+
+        /* Binding drops the bound books list of the student, not the book */
+        repo.bind(1, 1);
+        cache.get(ResponseCache.Kind.BOOK, 1, () -> load(book)).block();
+        cache.get(ResponseCache.Kind.BOUND_BOOKS, 1, () -> load(book)).block();
+        assertEquals(3, loads.get());
+
+        repo.removeBook(1);
+        cache.get(ResponseCache.Kind.BOOK, 1, () -> load(book)).block();
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void loadRacingInvalidationIsNotStored() {
+        ResponseCache cache = cache(1024 * 1024);
+        Book book = repo.addBook("Dune", "Frank Herbert");
+        MonoProcessor<Book> loading = MonoProcessor.create();
+        AtomicReference<Encoded<Book>> result = new AtomicReference<>();
+        cache.get(ResponseCache.Kind.BOOK, 1, () -> loading).subscribe(result::set);
+
+        /* Changed after the load has read the old state, before it completes */
+        book.setTitle("Dune Messiah");
+        cache.bookChanged(1);
+        Book stale = new Book();
+        stale.setId(1);
+        stale.setTitle("Dune");
+        loading.onNext(stale);
+
+        /* The caller that raced gets its value, later callers don't */
+        assertEquals("Dune", result.get().getValue().getTitle());
+        Encoded<Book> fresh = cache.get(ResponseCache.Kind.BOOK, 1, () -> load(book)).block();
+        assertEquals("Dune Messiah", fresh.getValue().getTitle());
+        assertEquals(1, cache.snapshot().getStalePuts());
+
+        /* Load started after the invalidation is stored */
+        cache.get(ResponseCache.Kind.BOOK, 1, () -> load(book)).block();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+        ResponseCache cache = cache(1024 * 1024);
+        Book book = repo.addBook("Dune", "Frank Herbert");
+        try {
+            cache.get(ResponseCache.Kind.BOOK, 1, () -> Mono.<Book>error(new IllegalStateException("failed"))).block();
+            fail("Load error is not propagated");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        cache.get(ResponseCache.Kind.BOOK, 1, () -> load(book)).block();
+        assertEquals(1, loads.get());
+        assertSnapshot(cache, 1, 0, 2, 0);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverSize() {
+        /* Two books with the entry overhead fit in a stripe */
+        ResponseCache cache = cache(16 * 320);
+        for (long id = 1; id <= 100; id++) {
+            Book book = repo.addBook("Title " + id, "Author");
+            cache.get(ResponseCache.Kind.BOOK, id, () -> load(book)).block();
+        }
+
+        CacheSnapshot snapshot = cache.snapshot();
+        assertEquals(100, snapshot.getMisses());
+        assertEquals(100 - snapshot.getEntries(), snapshot.getEvictions());
+        assertTrue(snapshot.getBytes() <= 16 * 320);
+        assertTrue(snapshot.getEntries() > 0);
+    }
+
+    @Test
+    public void disabledWithZeroSize() {
+        ResponseCache cache = cache(0);
+        Book book = repo.addBook("Dune", "Frank Herbert");
+        cache.get(ResponseCache.Kind.BOOK, 1, () -> load(book)).block();
+        cache.get(ResponseCache.Kind.BOOK, 1, () -> load(book)).block();
+
+        assertEquals(2, loads.get());
+        assertSnapshot(cache, 0, 0, 0, 0);
+    }
+
+    private Mono<Book> load(Book book) {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return book;
+        });
+    }
+
+    private ResponseCache cache(long maxBytes) {
+        LibraryProperties properties = new LibraryProperties();
+        properties.getCache().setMaxBytes(maxBytes);
+        return new ResponseCache(repo, new ObjectMapper(), properties);
+    }
+
+    private static void assertSnapshot(ResponseCache cache, long entries, long hits, long misses, long evictions) {
+        CacheSnapshot snapshot = cache.snapshot();
+        assertEquals(entries, snapshot.getEntries());
+        assertEquals(hits, snapshot.getHits());
+        assertEquals(misses, snapshot.getMisses());
+        assertEquals(evictions, snapshot.getEvictions());
+    }
+}
@@ -0,0 +1,122 @@
+package ru.abagiev.examples.spring.intercept.coalesce;
+
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String> flight = new SingleFlight<>("test");
+    private final AtomicInteger subscribed = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+
+    @Test
+    public void joinsCallInFlight() {
+        MonoProcessor<String> source = MonoProcessor.create();
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+        flight.run("key", call(source)).subscribe(first::set);
+        flight.run("key", call(source)).subscribe(second::set);
+
+        assertEquals(1, subscribed.get());
+        source.onNext("value");
+
+        assertEquals("value", first.get());
+        assertEquals("value", second.get());
+        assertSnapshot(0, 1, 1);
+    }
+
+    @Test
+    public void differentKeysRunSeparately() {
+        flight.run("a", call(Mono.just("a"))).block();
+        flight.run("b", call(Mono.just("b"))).block();
+
+        assertEquals(2, subscribed.get());
+        assertSnapshot(0, 2, 0);
+    }
+
+    @Test
+    public void resultIsNotKeptAfterCompletion() {
+        assertEquals("first", flight.run("key", call(Mono.just("first"))).block());
+        assertEquals("second", flight.run("key", call(Mono.just("second"))).block());
+
+        assertEquals(2, subscribed.get());
+        assertSnapshot(0, 2, 0);
+    }
+
+    @Test
+    public void errorIsSharedAndNotKept() {
+        MonoProcessor<String> source = MonoProcessor.create();
+        AtomicReference<Throwable> first = new AtomicReference<>();
+        AtomicReference<Throwable> second = new AtomicReference<>();
+        flight.run("key", call(source)).subscribe(v -> { }, first::set);
+        flight.run("key", call(source)).subscribe(v -> { }, second::set);
+
+        IllegalStateException error = new IllegalStateException("failed");
+        source.onError(error);
+
+        assertEquals(error, first.get());
+        assertEquals(error, second.get());
+        assertEquals("next", flight.run("key", call(Mono.just("next"))).block());
+    }
+
+    @Test
+    public void oneSubscriberCancellingDetachesOnlyIt() {
+        MonoProcessor<String> source = MonoProcessor.create();
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+        Disposable starter = flight.run("key", call(source)).subscribe(first::set);
+        flight.run("key", call(source)).subscribe(second::set);
+
+        /* The one that started the call goes away, the call keeps running for the other one */
+        starter.dispose();
+        assertEquals(0, cancelled.get());
+        assertSnapshot(1, 1, 1);
+
+        source.onNext("value");
+        assertNull(first.get());
+        assertEquals("value", second.get());
+        assertSnapshot(0, 1, 1);
+    }
+
+    @Test
+    public void allSubscribersCancellingCancelsCall() {
+        MonoProcessor<String> source = MonoProcessor.create();
+        Disposable first = flight.run("key", call(source)).subscribe();
+        Disposable second = flight.run("key", call(source)).subscribe();
+
+        first.dispose();
+        assertEquals(0, cancelled.get());
+        second.dispose();
+        assertEquals(1, cancelled.get());
+        assertSnapshot(0, 1, 1);
+
+        /* A cancelled call isn't joined, the next subscriber starts a new one */
+        MonoProcessor<String> next = MonoProcessor.create();
+        AtomicReference<String> value = new AtomicReference<>();
+        flight.run("key", call(next)).subscribe(value::set);
+        assertEquals(2, subscribed.get());
+        next.onNext("next");
+        assertEquals("next", value.get());
+    }
+
+    private Mono<String> call(Mono<String> source) {
+        return source
+                .doOnSubscribe(s -> subscribed.incrementAndGet())
+                .doOnCancel(cancelled::incrementAndGet);
+    }
+
+    private void assertSnapshot(int inFlight, long calls, long joined) {
+        CoalesceSnapshot snapshot = flight.snapshot();
+        assertEquals(inFlight, snapshot.getInFlight());
+        assertEquals(calls, snapshot.getCalls());
+        assertEquals(joined, snapshot.getJoined());
+    }
+}
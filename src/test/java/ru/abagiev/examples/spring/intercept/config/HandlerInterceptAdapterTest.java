@@ -0,0 +1,65 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointMetricsRegistry;
+import ru.abagiev.examples.spring.intercept.metrics.EndpointSnapshot;
+
+import static org.junit.Assert.assertEquals;
+
+/* Errors of handlers intercepted by the adapter keep the status mapped by the error handler and count as calls */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "intercept.mode=handler")
+public class HandlerInterceptAdapterTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private EndpointMetricsRegistry metricsRegistry;
+
+    @Test
+    public void handlerThrowingIsAnsweredWithMappedStatus() {
+        EndpointSnapshot before = endpoint("/book/export");
+
+        /* Unknown format fails in the handler itself, before it returns a publisher */
+        client.get().uri("/book/export?format=xml")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(400)
+                .jsonPath("$.message").isEqualTo("No enum constant "
+                        + "ru.abagiev.examples.spring.intercept.rest.CatalogFormat.Format.XML");
+
+        EndpointSnapshot after = endpoint("/book/export");
+        assertEquals(before.getCalls() + 1, after.getCalls());
+        assertEquals(before.getErrors() + 1, after.getErrors());
+    }
+
+    @Test
+    public void errorPublisherIsAnsweredWithMappedStatus() {
+        EndpointSnapshot before = endpoint("/book/{id}");
+
+        client.get().uri("/book/{id}", 999_999)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Book is not found by ID 999999");
+
+        /* Expected outcome, counted as a call but not as an error */
+        EndpointSnapshot after = endpoint("/book/{id}");
+        assertEquals(before.getCalls() + 1, after.getCalls());
+        assertEquals(before.getErrors(), after.getErrors());
+    }
+
+    private EndpointSnapshot endpoint(String path) {
+        return metricsRegistry.snapshot().stream()
+                .filter(s -> s.getMethod().equals("GET") && s.getPath().equals(path))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No endpoint GET " + path));
+    }
+}
@@ -0,0 +1,48 @@
+package ru.abagiev.examples.spring.intercept.config;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PathTemplateTest {
+
+    @Test
+    public void rendersVariablesFromArguments() {
+        Map<String, Integer> vars = new HashMap<>();
+        vars.put("studentId", 1);
+        vars.put("bookId", 0);
+        PathTemplate template = PathTemplate.compile("/student/{studentId}/bind/{bookId}", vars);
+
+        assertEquals("/student/7/bind/42", template.render(new Object[]{42L, 7L}));
+        assertEquals("/student/{studentId}/bind/{bookId}", template.getPattern());
+    }
+
+    @Test
+    public void keepsPlaceholderForNullOrUnknownVariable() {
+        PathTemplate template = PathTemplate.compile("/book/{id}/{other}/x", Collections.singletonMap("id", 0));
+
+        assertEquals("/book/5/{other}/x", template.render(new Object[]{5}));
+        assertEquals("/book/{id}/{other}/x", template.render(new Object[]{null}));
+    }
+
+    @Test
+    public void rendersLiteralPathAsIs() {
+        PathTemplate template = PathTemplate.compile("/book/all", Collections.emptyMap());
+        assertEquals("/book/all", template.render(new Object[0]));
+
+        /* Unclosed brace is a literal */
+        assertEquals("/book/{id", PathTemplate.compile("/book/{id", Collections.singletonMap("id", 0)).render(new Object[]{1}));
+    }
+
+    @Test
+    public void normalizesJoinedParts() {
+        assertEquals("/book/all", PathTemplate.normalize("/book/", "/all/"));
+        assertEquals("/book/all", PathTemplate.normalize("book", "all"));
+        assertEquals("/a/b", PathTemplate.normalize("//a//", "", "b//"));
+        assertEquals("/", PathTemplate.normalize("/", ""));
+    }
+}
@@ -0,0 +1,103 @@
+package ru.abagiev.examples.spring.intercept.limit;
+
+import org.junit.Test;
+import ru.abagiev.examples.spring.intercept.config.InterceptProperties;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void admitsUpToLimitAndRejectsOver() {
+        ConcurrencyLimiter limiter = limiter(3);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertSnapshot(limiter, 3, 3, 2);
+
+        /* A released slot is admitted again */
+        limiter.release();
+        assertSnapshot(limiter, 3, 2, 2);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertSnapshot(limiter, 3, 3, 3);
+
+        limiter.release();
+        limiter.release();
+        limiter.release();
+        assertSnapshot(limiter, 3, 0, 3);
+        assertEquals(1, limiter.getRejection().getRetryAfterSeconds());
+    }
+
+    @Test
+    public void shrinksAsLatencyGrows() {
+        ConcurrencyLimiter limiter = limiter(20);
+        holdAll(limiter);
+        for (int i = 0; i < 5; i++) {
+            limiter.sample(System.nanoTime() - MS);
+        }
+
+        /* Every window until the long-term baseline catches up with the new latency */
+        for (int i = 0; i < 5; i++) {
+            int before = limiter.snapshot().getLimit();
+            limiter.sample(System.nanoTime() - 20 * MS);
+            LimiterSnapshot after = limiter.snapshot();
+            assertTrue(before + " -> " + after.getLimit(), after.getLimit() < before);
+            assertTrue(after.getRttMicros() >= 20_000);
+        }
+    }
+
+    @Test
+    public void growsAtLimitWhileLatencyIsFlat() {
+        ConcurrencyLimiter limiter = limiter(20);
+        holdAll(limiter);
+        for (int i = 0; i < 20; i++) {
+            limiter.sample(System.nanoTime() - MS);
+        }
+        assertTrue(limiter.snapshot().getLimit() > 25);
+        assertTrue(limiter.snapshot().getLimit() <= 100);
+    }
+
+    @Test
+    public void doesNotGrowUnderLightLoad() {
+        ConcurrencyLimiter limiter = limiter(20);
+        assertTrue(limiter.tryAcquire());
+        for (int i = 0; i < 20; i++) {
+            limiter.sample(System.nanoTime() - MS);
+        }
+        assertEquals(20, limiter.snapshot().getLimit());
+    }
+
+    /* Takes all the slots, so that the limit is reached in every window */
+    private static void holdAll(ConcurrencyLimiter limiter) {
+        while (limiter.tryAcquire()) {
+        }
+    }
+
+    /* Every sample closes a window */
+    private static ConcurrencyLimiter limiter(int initialLimit) {
+        InterceptProperties.Limit config = new InterceptProperties.Limit();
+        config.setInitialLimit(initialLimit);
+        config.setMinLimit(2);
+        config.setMaxLimit(100);
+        config.setWindow(Duration.ZERO);
+        config.setMinSamples(1);
+        return new ConcurrencyLimiter("test", config);
+    }
+
+    private static void assertSnapshot(ConcurrencyLimiter limiter, int limit, int inFlight, long rejected) {
+        LimiterSnapshot snapshot = limiter.snapshot();
+        assertEquals(limit, snapshot.getLimit());
+        assertEquals(inFlight, snapshot.getInFlight());
+        assertEquals(rejected, snapshot.getRejected());
+    }
+}
@@ -0,0 +1,161 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import org.springframework.web.bind.annotation.RequestMethod;
+import ru.abagiev.examples.spring.intercept.config.InterceptProperties;
+import ru.abagiev.examples.spring.intercept.config.MappingDef;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/* Overflow policies, with the writer held on the first event so that the buffer fills up */
+public class AsyncRequestLoggerTest {
+
+    private static final MappingDef MAPPING = MappingDef.of(RequestMethod.GET, "/test");
+
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+    private final Logger logger = gatedLogger();
+    private AsyncRequestLogger requestLogger;
+
+    @After
+    public void stop() throws InterruptedException {
+        gate.countDown();
+        if (requestLogger != null) {
+            requestLogger.stop();
+        }
+    }
+
+    @Test
+    public void dropWhenFull() throws InterruptedException {
+        requestLogger = logger(4, OverflowPolicy.DROP, 1);
+        holdWriter();
+
+        for (int i = 1; i <= 10; i++) {
+            submit(event(i));
+        }
+        assertEquals(4, requestLogger.getQueueSize());
+        assertEquals(6, requestLogger.getDroppedCount());
+
+        gate.countDown();
+        requestLogger.stop();
+        assertEquals(paths(0, 1, 2, 3, 4), lines);
+    }
+
+    @Test
+    public void sampleSuccessesOverThreshold() throws InterruptedException {
+        /* Sampling starts at 3/4 of the capacity, keeping every second success */
+        requestLogger = logger(8, OverflowPolicy.SAMPLE, 2);
+        holdWriter();
+
+        for (int i = 1; i <= 6; i++) {
+            submit(event(i));
+        }
+        assertEquals(0, requestLogger.getSampledOutCount());
+
+        /* Errors are never sampled out */
+        submit(error(7));
+        assertEquals(0, requestLogger.getSampledOutCount());
+
+        /* Kept, sampled out, kept but the buffer is full, sampled out */
+        for (int i = 8; i <= 11; i++) {
+            submit(event(i));
+        }
+        assertEquals(2, requestLogger.getSampledOutCount());
+        assertEquals(1, requestLogger.getDroppedCount());
+
+        gate.countDown();
+        requestLogger.stop();
+        List<String> expected = paths(0, 1, 2, 3, 4, 5, 6);
+        expected.add("GET /test/7, error=failed, time=1");
+        expected.add("GET /test/8, time=1");
+        assertEquals(expected, lines);
+    }
+
+    @Test
+    public void blockUntilWritten() throws Exception {
+        requestLogger = logger(2, OverflowPolicy.BLOCK, 1);
+        holdWriter();
+        submit(event(1));
+        submit(event(2));
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> submit(event(3)));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        gate.countDown();
+        blocked.get(10, TimeUnit.SECONDS);
+        requestLogger.stop();
+        assertEquals(0, requestLogger.getDroppedCount());
+        assertEquals(paths(0, 1, 2, 3), lines);
+    }
+
+    /* Same as the interceptor: an event is created only for a call the logger accepts */
+    private void submit(RequestLogEvent event) {
+        if (requestLogger.accepts(logger, event.getLevel(), event.isError())) {
+            requestLogger.log(event);
+        }
+    }
+
+    /* Logs event 0 and waits until the writer is stuck writing it */
+    private void holdWriter() throws InterruptedException {
+        submit(event(0));
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+    }
+
+    private AsyncRequestLogger logger(int bufferSize, OverflowPolicy overflow, int sampleEvery) {
+        InterceptProperties properties = new InterceptProperties();
+        properties.getLog().setBufferSize(bufferSize);
+        properties.getLog().setOverflow(overflow);
+        properties.getLog().setSampleEvery(sampleEvery);
+        return new AsyncRequestLogger(properties);
+    }
+
+    private RequestLogEvent event(int i) {
+        return new RequestLogEvent(logger, MAPPING, "/test/" + i, null, "", null, null, 1, 0, 0, -1, -1, false,
+                Level.INFO, null);
+    }
+
+    private RequestLogEvent error(int i) {
+        return new RequestLogEvent(logger, MAPPING, "/test/" + i, null, "", null, new IllegalStateException("failed"),
+                1, 0, 0, -1, -1, false, Level.ERROR, null);
+    }
+
+    private static List<String> paths(Integer... ids) {
+        List<String> paths = new ArrayList<>();
+        for (int id : Arrays.asList(ids)) {
+            paths.add("GET /test/" + id + ", time=1");
+        }
+        return paths;
+    }
+
+    /* Every level is enabled, writing a line blocks until the gate opens */
+    private Logger gatedLogger() {
+        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[]{Logger.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("is")) {
+                        return true;
+                    }
+                    if (args != null && args.length == 1 && args[0] instanceof String) {
+                        writing.countDown();
+                        gate.await();
+                        lines.add((String) args[0]);
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,129 @@
+package ru.abagiev.examples.spring.intercept.log;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePowerOfTwo() {
+        new RingBuffer<>(6);
+    }
+
+    @Test
+    public void pollEmpty() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void rejectsWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void wrapsAroundManyLaps() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(8);
+        int next = 0;
+        int expected = 0;
+        /* Uneven batches, so that head and tail meet at every slot index */
+        for (int lap = 0; lap < 1000; lap++) {
+            int put = lap % 8 + 1;
+            for (int i = 0; i < put && buffer.offer(next); i++) {
+                next++;
+            }
+            int take = lap % 5 + 1;
+            for (int i = 0; i < take; i++) {
+                Integer e = buffer.poll();
+                if (e == null) {
+                    break;
+                }
+                assertEquals(Integer.valueOf(expected++), e);
+            }
+            assertEquals(next - expected, buffer.size());
+        }
+        Integer e;
+        while ((e = buffer.poll()) != null) {
+            assertEquals(Integer.valueOf(expected++), e);
+        }
+        assertEquals(next, expected);
+        assertTrue(next > 8 * 100);
+    }
+
+    @Test
+    public void concurrentProducersSingleConsumer() throws Exception {
+        RingBuffer<Long> buffer = new RingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 100_000;
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                long producer = p;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (long i = 0; i < perProducer; i++) {
+                        while (!buffer.offer(producer << 32 | i)) {
+                            Thread.yield();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            /* Elements of one producer come out in the order it offered them, none is lost or duplicated */
+            long[] next = new long[producers];
+            long received = 0;
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+            start.countDown();
+            while (received < (long) producers * perProducer) {
+                Long e = buffer.poll();
+                if (e == null) {
+                    assertTrue("Consumer timed out", System.nanoTime() < deadline);
+                    Thread.yield();
+                    continue;
+                }
+                int producer = (int) (e >>> 32);
+                assertEquals(next[producer]++, e & 0xFFFFFFFFL);
+                received++;
+            }
+            for (Future<?> f : futures) {
+                f.get(1, TimeUnit.MINUTES);
+            }
+            assertNull(buffer.poll());
+            for (long n : next) {
+                assertEquals(perProducer, n);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
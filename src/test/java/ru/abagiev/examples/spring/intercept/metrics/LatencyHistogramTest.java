@@ -0,0 +1,74 @@
+package ru.abagiev.examples.spring.intercept.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveOwnBuckets() {
+        for (int value = 0; value < 32; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.bucketUpperBound(value));
+        }
+        assertEquals(32, LatencyHistogram.bucketIndex(32));
+        assertEquals(32, LatencyHistogram.bucketUpperBound(32));
+        /* Next power of two doubles the bucket width */
+        assertEquals(64, LatencyHistogram.bucketIndex(64));
+        assertEquals(65, LatencyHistogram.bucketUpperBound(64));
+    }
+
+    @Test
+    public void bucketBoundsEncloseValueWithinPrecision() {
+        int previous = -1;
+        for (long value = 1; value < 1L << 41; value += 1 + value / 7) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            long lower = LatencyHistogram.bucketUpperBound(index - 1) + 1;
+
+            assertTrue("index of " + value, index >= previous);
+            assertTrue("bucket of " + value, lower <= value && value <= upper);
+            assertTrue("width of " + value, upper - lower <= value / 32);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), snapshot.getMax());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(50_500), snapshot.getMean());
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(50), snapshot.getPercentile(50));
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(99), snapshot.getPercentile(99));
+        /* Never above the largest value recorded */
+        assertEquals(snapshot.getMax(), snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void clampsOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getPercentile(50));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(0, snapshot.getPercentile(50));
+        assertEquals((1L << 41) - 1, snapshot.getMax());
+        assertEquals(snapshot.getMax(), snapshot.getPercentile(100));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " got " + actual, actual >= expected && actual - expected <= expected / 32);
+    }
+}
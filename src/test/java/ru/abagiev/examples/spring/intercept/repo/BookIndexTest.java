@@ -0,0 +1,147 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import org.junit.Test;
+import ru.abagiev.examples.spring.intercept.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class BookIndexTest {
+
+    private final BookIndex index = new BookIndex();
+    private final Map<Long, Book> books = new HashMap<>();
+
+    @Test
+    public void tokenizesLetterAndDigitRuns() {
+        assertEquals(Arrays.asList("war", "and", "peace", "1869"), BookIndex.tokenize("War  and-Peace (1869)"));
+        assertEquals(Collections.emptyList(), BookIndex.tokenize(" -- "));
+    }
+
+    @Test
+    public void matchesAllTermsInIdOrder() {
+        add(3, "War and Peace", "Leo Tolstoy");
+        add(1, "Peace of Mind", "Anon");
+        add(2, "Anna Karenina", "Leo Tolstoy");
+        add(4, "Peace Talks", "Leo Smith");
+
+        assertEquals(ids(1, 3, 4), search("peace ", 10));
+        assertEquals(ids(3, 4), search("leo peace ", 10));
+        assertEquals(ids(2, 3), search("TOLSTOY leo ", 10));
+        assertEquals(ids(), search("tolstoy mind ", 10));
+        assertEquals(ids(), search("unknown ", 10));
+    }
+
+    @Test
+    public void returnsLowestIdsUpToLimit() {
+        /* Added out of ID order, the posting lists are kept sorted anyway */
+        for (long id = 100; id >= 1; id--) {
+            add(id, "Common title " + id, id % 2 == 0 ? "Even" : "Odd");
+        }
+
+        assertEquals(ids(1, 2, 3, 4, 5), search("common ", 5));
+        assertEquals(ids(2, 4, 6), search("common even ", 3));
+        assertEquals(ids(), search("common ", 0));
+        assertEquals(100, search("common ", 1000).size());
+    }
+
+    @Test
+    public void lastTermMatchesAsPrefix() {
+        add(1, "Alpha", "X");
+        add(2, "Alps", "X");
+        add(3, "Beta", "X");
+        /* Has two tokens with the prefix, found once */
+        add(4, "Alpha Alpine", "Y");
+
+        assertEquals(ids(1, 2, 4), search("al", 10));
+        assertEquals(ids(1, 2), search("al", 2));
+        assertEquals(ids(4), search("y al", 10));
+        assertEquals(ids(1, 4), search("alpha", 10));
+        /* Separator at the end makes the last term whole */
+        assertEquals(ids(), search("al ", 10));
+    }
+
+    @Test
+    public void prefixOrWholeTermDrives() {
+        /* Rare prefix with a common whole term and the other way round give the same answer */
+        for (long id = 1; id <= 200; id++) {
+            add(id, "Book " + (id % 50 == 0 ? "rare" : "plain"), "Author");
+        }
+
+        assertEquals(ids(50, 100, 150, 200), search("author ra", 10));
+        assertEquals(ids(50, 100), search("rare author ", 2));
+        assertEquals(ids(1, 2, 3), search("book pl", 3));
+    }
+
+    @Test
+    public void removedBooksAreNotFound() {
+        add(1, "Same", "A");
+        add(2, "Same", "B");
+        add(3, "Same", "C");
+        remove(2);
+
+        assertEquals(ids(1, 3), search("same ", 10));
+        remove(1);
+        remove(3);
+        assertEquals(ids(), search("same ", 10));
+        assertEquals(Collections.emptyList(), index.suggest("sa", 10));
+
+        add(4, "Same", "D");
+        assertEquals(ids(4), search("same", 10));
+    }
+
+    @Test
+    public void skipsBooksMissingFromLookup() {
+        add(1, "Title", "A");
+        add(2, "Title", "B");
+        add(3, "Title", "C");
+        /* Removed from the repository, not yet from the index */
+        books.remove(1L);
+
+        assertEquals(ids(2, 3), search("title ", 2));
+    }
+
+    @Test
+    public void suggestsTokensInAlphabeticalOrder() {
+        add(1, "Alpha Alps", "Alpine");
+        add(2, "Beta", "Alpha");
+
+        assertEquals(Arrays.asList("alpha", "alpine", "alps"), index.suggest(" AL", 10));
+        assertEquals(Arrays.asList("alpha", "alpine"), index.suggest("al", 2));
+        assertEquals(Collections.emptyList(), index.suggest("  ", 10));
+    }
+
+    private void add(long id, String title, String author) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        books.put(id, book);
+        index.add(book);
+    }
+
+    private void remove(long id) {
+        index.remove(books.remove(id));
+    }
+
+    private List<Long> search(String query, int limit) {
+        List<Long> ids = new ArrayList<>();
+        for (Book book : index.search(query, limit, books::get)) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(long... ids) {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+}
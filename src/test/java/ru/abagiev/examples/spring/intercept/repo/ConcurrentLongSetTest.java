@@ -0,0 +1,191 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentLongSetTest {
+
+    @Test
+    public void addRemoveContains() {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+        assertTrue(set.isEmpty());
+
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.contains(42));
+        assertFalse(set.contains(43));
+        assertEquals(1, set.size());
+
+        assertTrue(set.remove(42));
+        assertFalse(set.remove(42));
+        assertFalse(set.contains(42));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void negativeAndLargeKeys() {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+        long[] keys = {-1, Long.MAX_VALUE, Long.MIN_VALUE + 1, 1L << 32, 0xFFFFFFFFL};
+        for (long key : keys) {
+            assertTrue(set.add(key));
+        }
+        for (long key : keys) {
+            assertTrue(set.contains(key));
+        }
+        assertEquals(keys.length, set.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroIsReserved() {
+        new ConcurrentLongSet().add(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void minValueIsReserved() {
+        new ConcurrentLongSet().add(Long.MIN_VALUE);
+    }
+
+    @Test
+    public void reservedKeysAreNeverContained() {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void growsFromSmallestTable() {
+        ConcurrentLongSet set = new ConcurrentLongSet(1, 4);
+        int count = 100_000;
+        for (long key = 1; key <= count; key++) {
+            assertTrue(set.add(key));
+        }
+        assertEquals(count, set.size());
+        for (long key = 1; key <= count; key++) {
+            assertTrue("Lost key " + key, set.contains(key));
+        }
+        assertFalse(set.contains(count + 1));
+    }
+
+    @Test
+    public void removedKeysDoNotFillTable() {
+        /* Every add leaves a tombstone behind, a probe must still find free slots and other keys */
+        ConcurrentLongSet set = new ConcurrentLongSet(1, 8);
+        set.add(-7);
+        for (long key = 1; key <= 10_000; key++) {
+            assertTrue(set.add(key));
+            assertTrue(set.remove(key));
+        }
+        assertEquals(1, set.size());
+        assertTrue(set.contains(-7));
+        assertFalse(set.contains(10_000));
+    }
+
+    @Test
+    public void reAddAfterRemove() {
+        ConcurrentLongSet set = new ConcurrentLongSet(1, 4);
+        for (long key = 1; key <= 1000; key++) {
+            set.add(key);
+        }
+        for (long key = 1; key <= 1000; key += 2) {
+            assertTrue(set.remove(key));
+        }
+        for (long key = 1; key <= 1000; key++) {
+            assertEquals(key % 2 == 1, set.add(key));
+        }
+        assertEquals(1000, set.size());
+    }
+
+    @Test
+    public void forEachWhileStops() {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+        for (long key = 1; key <= 100; key++) {
+            set.add(key);
+        }
+        long[] sum = new long[1];
+        set.forEach(key -> sum[0] += key);
+        assertEquals(5050, sum[0]);
+
+        int[] visited = new int[1];
+        assertFalse(set.forEachWhile(key -> ++visited[0] < 10));
+        assertEquals(10, visited[0]);
+        assertTrue(set.forEachWhile(key -> true));
+    }
+
+    @Test
+    public void concurrentWritersAndReaders() throws Exception {
+        /* Few segments with tiny tables, so writers keep rehashing under optimistic readers */
+        ConcurrentLongSet set = new ConcurrentLongSet(2, 4);
+        int writers = 4;
+        int perWriter = 50_000;
+        /* Keys present for the whole test, a reader must never miss them while tables are rebuilt */
+        long[] stable = new long[64];
+        for (int i = 0; i < stable.length; i++) {
+            stable[i] = -(i + 1);
+            set.add(stable[i]);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                long base = (long) w * perWriter;
+                writes.add(pool.submit(() -> {
+                    start.await();
+                    for (long key = base + 1; key <= base + perWriter; key++) {
+                        assertTrue(set.add(key));
+                    }
+                    /* Drop every odd key again, leaving tombstones for rehash to clean up */
+                    for (long key = base + 1; key <= base + perWriter; key += 2) {
+                        assertTrue(set.remove(key));
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> reads = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                reads.add(pool.submit(() -> {
+                    start.await();
+                    while (writing.get()) {
+                        for (long key : stable) {
+                            assertTrue("Missed key " + key, set.contains(key));
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> f : writes) {
+                f.get(1, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            for (Future<?> f : reads) {
+                f.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(stable.length + writers * perWriter / 2, set.size());
+        for (long key = 1; key <= (long) writers * perWriter; key++) {
+            assertEquals(key % 2 == 0, set.contains(key));
+        }
+        long[] count = new long[1];
+        set.forEach(key -> count[0]++);
+        assertEquals(set.size(), count[0]);
+    }
+}
@@ -0,0 +1,239 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import ru.abagiev.examples.spring.intercept.config.LibraryProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LibraryProperties properties;
+    private Path path;
+    private LibraryRepository repo;
+    private Journal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        path = folder.getRoot().toPath().resolve("library.journal");
+        properties = new LibraryProperties();
+        properties.getPersistence().setSnapshotPath(folder.getRoot().toPath().resolve("library.snapshot").toString());
+        properties.getPersistence().getJournal().setEnabled(true);
+        properties.getPersistence().getJournal().setPath(path.toString());
+        properties.getPersistence().getJournal().setCompactSize(0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void replaysWrittenRecords() throws Exception {
+        open();
+        addBook("first");
+        addBook("second");
+        journal.apply(() -> repo.removeBook(1), v -> JournalRecord.removeBook(1)).block();
+        reopen();
+
+        assertNull(repo.getBook(1));
+        assertEquals("second", repo.getBook(2).getTitle());
+        assertEquals(1, repo.getAllBooks().size());
+    }
+
+    @Test
+    public void replaysFramesLargerThanReadBuffer() throws Exception {
+        StringBuilder title = new StringBuilder();
+        while (title.length() < 200_000) {
+            title.append("long title ");
+        }
+        open();
+        addBook("first");
+        addBook(title.toString());
+        addBook("third");
+        reopen();
+
+        assertEquals(title.toString(), repo.getBook(2).getTitle());
+        assertEquals("third", repo.getBook(3).getTitle());
+    }
+
+    @Test
+    public void cutsOffTornFrame() throws Exception {
+        open();
+        addBook("first");
+        long valid = Files.size(path);
+        addBook("second");
+        long full = Files.size(path);
+
+        /* Crash in the middle of the second frame */
+        truncate(valid + (full - valid) / 2);
+        reopen();
+
+        assertEquals(1, repo.getAllBooks().size());
+        assertEquals("first", repo.getBook(1).getTitle());
+        assertEquals(valid, Files.size(path));
+    }
+
+    @Test
+    public void cutsOffTornHeader() throws Exception {
+        open();
+        addBook("first");
+        long valid = Files.size(path);
+        addBook("second");
+
+        truncate(valid + 3);
+        reopen();
+
+        assertEquals(1, repo.getAllBooks().size());
+        assertEquals(valid, Files.size(path));
+    }
+
+    @Test
+    public void cutsOffFrameWithBadChecksum() throws Exception {
+        open();
+        addBook("first");
+        long valid = Files.size(path);
+        addBook("second");
+        long full = Files.size(path);
+
+        /* Length is intact, the last payload byte is not */
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, full - 1);
+            b.flip();
+            b.put(0, (byte) (b.get(0) ^ 0xFF));
+            channel.write(b, full - 1);
+        }
+        reopen();
+
+        assertEquals(1, repo.getAllBooks().size());
+        assertEquals(valid, Files.size(path));
+    }
+
+    @Test
+    public void appendsAfterCutOffTail() throws Exception {
+        open();
+        addBook("first");
+        long valid = Files.size(path);
+        addBook("second");
+
+        truncate(Files.size(path) - 1);
+        reopen();
+        assertEquals(valid, Files.size(path));
+
+        /* New records must follow the last valid frame, not the torn bytes, or replay would never reach them */
+        addBook("third");
+        reopen();
+
+        assertEquals(2, repo.getAllBooks().size());
+        assertEquals("first", repo.getAllBooks().get(0).getTitle());
+        assertEquals("third", repo.getAllBooks().get(1).getTitle());
+    }
+
+    @Test
+    public void compactsIntoSnapshotAndNewSegment() throws Exception {
+        properties.getPersistence().getJournal().setCompactSize(1);
+        open();
+        addBook("first");
+        /* Second write goes to the new segment, after compaction the first one is deleted */
+        awaitSegments(path.resolveSibling("library.journal.1"));
+        addBook("second");
+        awaitSegments(path.resolveSibling("library.journal.2"));
+        assertTrue(Files.exists(folder.getRoot().toPath().resolve("library.snapshot")));
+
+        reopen();
+        assertEquals(2, repo.getAllBooks().size());
+        assertEquals("second", repo.getBook(2).getTitle());
+
+        /* Numbering goes on after the last segment */
+        addBook("third");
+        awaitSegments(path.resolveSibling("library.journal.3"));
+        reopen();
+        assertEquals(3, repo.getAllBooks().size());
+    }
+
+    @Test
+    public void replaysSegmentsLeftByUnfinishedCompaction() throws Exception {
+        open();
+        addBook("first");
+        addBook("second");
+        long size = Files.size(path);
+        journal.close();
+        journal = null;
+
+        /* Crash after the new segment is started, before the snapshot is saved */
+        Files.createFile(path.resolveSibling("library.journal.1"));
+        open();
+        assertEquals(2, repo.getAllBooks().size());
+
+        addBook("third");
+        reopen();
+        assertEquals(3, repo.getAllBooks().size());
+        assertEquals(size, Files.size(path));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCompactSizeOverLimit() throws Exception {
+        properties.getPersistence().getJournal().setCompactSize(2L * 1024 * 1024 * 1024);
+        open();
+    }
+
+    private void awaitSegments(Path last) throws InterruptedException, IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+                if (files.filter(f -> f.getFileName().toString().startsWith("library.journal"))
+                        .collect(Collectors.toList()).equals(Collections.singletonList(last))) {
+                    return;
+                }
+            }
+            Thread.sleep(10);
+        }
+        fail("Journal segments are not compacted into " + last);
+    }
+
+    private void addBook(String title) {
+        journal.apply(() -> repo.addBook(title, "author"), JournalRecord::addBook).block();
+    }
+
+    private void truncate(long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private void open() throws IOException {
+        repo = new LibraryRepository();
+        journal = new Journal(repo, new StaticListableBeanFactory().getBeanProvider(SnapshotPersistence.class), properties);
+        journal.open();
+    }
+
+    private void reopen() throws Exception {
+        journal.close();
+        journal = null;
+        open();
+    }
+}
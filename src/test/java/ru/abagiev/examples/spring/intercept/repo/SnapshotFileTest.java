@@ -0,0 +1,69 @@
+package ru.abagiev.examples.spring.intercept.repo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.abagiev.examples.spring.intercept.model.Book;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        StringBuilder longTitle = new StringBuilder();
+        while (longTitle.length() < 1000) {
+            longTitle.append("\u0412\u043e\u0439\u043d\u0430 and peace ");
+        }
+        LibraryRepository repo = new LibraryRepository();
+        repo.addBook("Dune", "Frank Herbert");
+        repo.addBook(longTitle.toString(), null);
+        repo.addBook("Removed", "Anon");
+        repo.addStudent("Ivan", "Petrov");
+        repo.addStudent("Anna", "Smirnova");
+        repo.bind(1, 1);
+        repo.bind(2, 2);
+        repo.removeBook(3);
+
+        Path path = folder.getRoot().toPath().resolve("library.snapshot");
+        SnapshotFile.Stats written = SnapshotFile.write(repo, path);
+        LibraryRepository loaded = new LibraryRepository();
+        SnapshotFile.Stats read = SnapshotFile.read(path, loaded);
+
+        assertEquals(written.toString(), read.toString());
+        assertEquals(2, read.getBooks());
+        assertEquals(2, read.getStudents());
+        assertEquals(2, read.getBindings());
+        assertEquals(Files.size(path), read.getBytes());
+
+        /* Models have no equals, compared by their string form */
+        assertEquals(repo.getAllBooks().toString(), loaded.getAllBooks().toString());
+        assertEquals(repo.getAllStudents().toString(), loaded.getAllStudents().toString());
+        assertNull(loaded.getBook(2).getAuthor());
+        assertEquals(longTitle.toString(), loaded.getBook(2).getTitle());
+        assertTrue(loaded.isBound(1, 1));
+        assertTrue(loaded.isBound(2, 2));
+        assertFalse(loaded.isBound(1, 2));
+
+        /* ID of the removed book is not given out again */
+        Book next = loaded.addBook("Next", "Author");
+        assertEquals(4, next.getId());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("other");
+        Files.write(path, "not a snapshot at all, just text".getBytes());
+        SnapshotFile.read(path, new LibraryRepository());
+    }
+}